@@ -0,0 +1,128 @@
+package problems.cache.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import problems.cache.simulation.CachePolicySimulator;
+import problems.cache.simulation.CachePolicySimulator.Policy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+// Throughput of every cache implementation under contention, through the simulator's read-through policies:
+//  - Zipf-distributed keys: a get, and a put on a miss
+//  - read-heavy (the cache holds most of the popular keys) and write-heavy (it holds few, so most reads miss) regimes
+//  - 1 to 64 threads sharing one cache: main() runs the whole matrix once per thread count, with the GC profiler
+// The cache is built and filled from the trace once per trial, so warm-up and measurement run against the same warm
+// instance. The hits / misses counters show the hit ratio each run actually saw.
+//
+// Usage: java -cp target/benchmarks.jar problems.cache.benchmark.CacheBenchmark [JMH options]
+//    or: java -jar target/benchmarks.jar CacheBenchmark -t 8 -p policy=LRU -prof gc
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+    private static final int KEY_SPACE = 1 << 17;
+    private static final int READ_HEAVY_CAPACITY = KEY_SPACE / 8;
+    private static final int WRITE_HEAVY_CAPACITY = KEY_SPACE / 256;
+    private static final int TRACE_LENGTH = 1 << 20;
+
+    // Boxed once, so the measured loop only allocates what the cache itself does
+    private static final Long[] TRACE = new Long[TRACE_LENGTH];
+
+    static {
+        long[] keys = CachePolicySimulator.zipf(TRACE_LENGTH, KEY_SPACE, 0.9, 42);
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            TRACE[i] = keys[i];
+        }
+    }
+
+    @Param({"LRU", "W-TinyLFU", "LFU", "ConcurrentLRU", "LongKeyLRU"})
+    private String policy;
+
+    @Param({"read", "write"})
+    private String regime;
+
+    private Policy cache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        IntFunction<Policy> factory = CachePolicySimulator.defaultPolicies().get(policy);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown policy " + policy);
+        }
+        cache = factory.apply(regime.equals("read") ? READ_HEAVY_CAPACITY : WRITE_HEAVY_CAPACITY);
+        for (Long key : TRACE) {
+            cache.access(key);
+        }
+    }
+
+    // Per-thread position in the trace, and access counts that JMH reports next to the throughput
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Accesses {
+        public long hits;
+        public long misses;
+        private int index;
+
+        @Setup(Level.Trial)
+        public void start(ThreadParams threads) {
+            // Each thread replays the trace from its own point
+            index = (int) ((long) TRACE_LENGTH * threads.getThreadIndex() / threads.getThreadCount());
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            hits = 0;
+            misses = 0;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean access(Accesses accesses) {
+        boolean hit = cache.access(TRACE[accesses.index]);
+        accesses.index = (accesses.index + 1) & (TRACE_LENGTH - 1);
+        if (hit) {
+            accesses.hits++;
+        } else {
+            accesses.misses++;
+        }
+        return hit;
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        for (int threads : THREAD_COUNTS) {
+            new Runner(new OptionsBuilder()
+                    .parent(options)
+                    .include(CacheBenchmark.class.getName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build()).run();
+        }
+    }
+}
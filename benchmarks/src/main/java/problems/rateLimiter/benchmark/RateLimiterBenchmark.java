@@ -0,0 +1,149 @@
+package problems.rateLimiter.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import problems.rateLimiter.RateLimiterRegistry;
+import problems.rateLimiter.algorithms.FixedWindowCounter;
+import problems.rateLimiter.algorithms.LeakyBucket;
+import problems.rateLimiter.algorithms.RateLimiter;
+import problems.rateLimiter.algorithms.SlidingWindowCounter;
+import problems.rateLimiter.algorithms.SlidingWindowLog;
+import problems.rateLimiter.algorithms.TokenBucket;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Throughput of every rate limiting algorithm under contention:
+//  - one shared key, or many keys looked up through RateLimiterRegistry
+//  - allow-heavy (limits far above the offered load) and deny-heavy (limit exhausted at once) regimes
+//  - 1 to 64 threads: main() runs the whole matrix once per thread count, with the GC profiler attached
+// The allowed / denied counters show which regime a run actually measured.
+//
+// Usage: java -cp target/benchmarks.jar problems.rateLimiter.benchmark.RateLimiterBenchmark [JMH options]
+//    or: java -jar target/benchmarks.jar RateLimiterBenchmark -t 8 -p algorithm=TokenBucket -prof gc
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+    private static final int MANY_KEYS = 1024;
+
+    private static final Integer[] KEYS = new Integer[MANY_KEYS]; // Boxed once, so lookups don't allocate
+
+    static {
+        for (int i = 0; i < MANY_KEYS; i++) {
+            KEYS[i] = i;
+        }
+    }
+
+    @Param({"TokenBucket", "FixedWindowCounter", "LeakyBucket", "SlidingWindowCounter", "SlidingWindowLog"})
+    private String algorithm;
+
+    @Param({"single", "many"})
+    private String keys;
+
+    @Param({"allow", "deny"})
+    private String regime;
+
+    private Function<Integer, RateLimiter> target;
+
+    @Setup
+    public void setUp() {
+        if (keys.equals("many")) {
+            RateLimiterRegistry<Integer> registry = new RateLimiterRegistry<>(key -> create(), 1, TimeUnit.HOURS);
+            target = registry::limiterFor;
+        } else {
+            RateLimiter limiter = create();
+            target = key -> limiter;
+        }
+    }
+
+    private RateLimiter create() {
+        boolean allowHeavy = regime.equals("allow");
+        switch (algorithm) {
+            case "TokenBucket":
+                return allowHeavy ? new TokenBucket(1_000_000_000, 1_000_000_000) : new TokenBucket(1, 1);
+            case "FixedWindowCounter":
+                return allowHeavy ? new FixedWindowCounter(Integer.MAX_VALUE, 1) : new FixedWindowCounter(1, 3600);
+            case "LeakyBucket":
+                return allowHeavy ? new LeakyBucket(Integer.MAX_VALUE, 1) : new LeakyBucket(1, 3_600_000);
+            case "SlidingWindowCounter":
+                return allowHeavy ? new SlidingWindowCounter(Integer.MAX_VALUE, 1, 10)
+                        : new SlidingWindowCounter(1, 3600, 10);
+            case "SlidingWindowLog":
+                // The log keeps one slot per request in the window, so its allow-heavy limit is bounded by memory
+                return allowHeavy ? new SlidingWindowLog(1 << 14, 1) : new SlidingWindowLog(1, 3600);
+            default:
+                throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+        }
+    }
+
+    // Per-thread key sequence, and decision counts that JMH reports next to the throughput
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Decisions {
+        public long allowed;
+        public long denied;
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(ThreadParams threads) {
+            allowed = 0;
+            denied = 0;
+            next = 0x9E3779B9 * (threads.getThreadIndex() + 1);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean allowRequest(Decisions decisions) {
+        // xorshift picks the next key without touching shared state
+        int next = decisions.next;
+        next ^= next << 13;
+        next ^= next >>> 17;
+        next ^= next << 5;
+        decisions.next = next;
+        boolean allowed = target.apply(KEYS[next & (MANY_KEYS - 1)]).allowRequest();
+        if (allowed) {
+            decisions.allowed++;
+        } else {
+            decisions.denied++;
+        }
+        return allowed;
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        for (int threads : THREAD_COUNTS) {
+            new Runner(new OptionsBuilder()
+                    .parent(options)
+                    .include(RateLimiterBenchmark.class.getName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build()).run();
+        }
+    }
+}
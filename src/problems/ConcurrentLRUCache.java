@@ -0,0 +1,211 @@
+package problems;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+// LRU cache whose reads never lock. A hit is served straight from a ConcurrentHashMap and the access is only recorded
+// into a small per-thread-stripe ring buffer. The LRU order is updated later, in batches, by whichever thread holds
+// the eviction lock (writers always, readers when a buffer fills up).
+// The buffers are lossy: when one is full the access is dropped, which only makes the LRU order slightly less exact
+// for a key that is hot anyway.
+public class ConcurrentLRUCache<K, V> {
+
+    private static final int READ_BUFFER_SIZE = 16; // Power of two
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+
+    private final int capacity;
+    private final ConcurrentHashMap<K, Node<K, V>> map;
+    private final ReadBuffer[] readBuffers;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    // Access order, least recently used at head. Guarded by evictionLock.
+    private final Node<K, V> head = new Node<>(null, null);
+    private final Node<K, V> tail = new Node<>(null, null);
+
+    public ConcurrentLRUCache(int capacity) {
+        this.capacity = capacity;
+        this.map = new ConcurrentHashMap<>(capacity);
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+        this.readBuffers = new ReadBuffer[stripes];
+        for (int i = 0; i < stripes; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+        head.next = tail;
+        tail.prev = head;
+    }
+
+    public V get(K key) {
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            return null;
+        }
+        ReadBuffer buffer = readBuffers[(int) (Thread.currentThread().getId() * 0x9E3779B97F4A7C15L >>> 40) & (readBuffers.length - 1)];
+        if (buffer.offer(node) >= DRAIN_THRESHOLD && evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    public void put(K key, V value) {
+        evictionLock.lock();
+        try {
+            drainReadBuffers(); // Apply pending reads first so eviction sees the latest order
+
+            Node<K, V> node = map.get(key);
+            if (node != null) {
+                node.value = value;
+                moveToTail(node);
+                return;
+            }
+
+            node = new Node<>(key, value);
+            map.put(key, node);
+            linkLast(node);
+
+            while (map.size() > capacity) {
+                Node<K, V> eldest = head.next;
+                unlink(eldest);
+                map.remove(eldest.key, eldest);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    // Replays buffered accesses into the LRU order. Caller holds evictionLock.
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            long read = buffer.readCounter;
+            long write = buffer.writeCounter.get();
+            for (; read < write; read++) {
+                int index = (int) (read & READ_BUFFER_MASK);
+                @SuppressWarnings("unchecked")
+                Node<K, V> node = (Node<K, V>) buffer.nodes.get(index);
+                if (node == null) {
+                    break; // Slot claimed but not published yet, pick it up on the next drain
+                }
+                buffer.nodes.lazySet(index, null);
+                if (node.prev != null) { // Still cached, not evicted since the read
+                    moveToTail(node);
+                }
+            }
+            buffer.readCounter = read;
+        }
+    }
+
+    private void linkLast(Node<K, V> node) {
+        node.prev = tail.prev;
+        node.next = tail;
+        tail.prev.next = node;
+        tail.prev = node;
+    }
+
+    private void unlink(Node<K, V> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    private void moveToTail(Node<K, V> node) {
+        if (tail.prev != node) {
+            unlink(node);
+            linkLast(node);
+        }
+    }
+
+    @Override
+    public String toString() {
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            StringBuilder sb = new StringBuilder("{");
+            for (Node<K, V> node = head.next; node != tail; node = node.next) {
+                sb.append(node.key).append('=').append(node.value);
+                if (node.next != tail) {
+                    sb.append(", ");
+                }
+            }
+            return sb.append('}').toString();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private volatile V value;
+        private Node<K, V> prev; // Guarded by evictionLock, null once evicted
+        private Node<K, V> next;
+
+        private Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    // Multi-producer ring of recent reads, consumed only under the eviction lock
+    private static final class ReadBuffer {
+        private final AtomicReferenceArray<Object> nodes = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        private volatile long readCounter;
+
+        // Returns how many reads are pending, or READ_BUFFER_SIZE if the buffer was full and the read was dropped
+        private int offer(Object node) {
+            long write = writeCounter.get();
+            int pending = (int) (write - readCounter);
+            if (pending >= READ_BUFFER_SIZE) {
+                return READ_BUFFER_SIZE;
+            }
+            if (writeCounter.compareAndSet(write, write + 1)) {
+                nodes.lazySet((int) (write & READ_BUFFER_MASK), node);
+                return pending + 1;
+            }
+            return pending; // Lost the race to another reader, drop this access
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<>(3);
+
+        cache.put(1, "A");
+        cache.put(2, "B");
+        cache.put(3, "C");
+        System.out.println(cache); // {1=A, 2=B, 3=C}
+
+        System.out.println(cache.get(1));
+        cache.put(4, "D"); // evicts 2 (the LRU)
+        System.out.println(cache); // {3=C, 1=A, 4=D}
+
+        System.out.println("\n--- 8 threads reading without locks ---");
+        ConcurrentLRUCache<Integer, Integer> shared = new ConcurrentLRUCache<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            shared.put(i, i);
+        }
+        Thread[] readers = new Thread[8];
+        long start = System.nanoTime();
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                for (int i = 0; i < 5_000_000; i++) {
+                    shared.get(i % 1000);
+                }
+            });
+            readers[t].start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        System.out.printf("40M reads in %d ms, %d entries%n", (System.nanoTime() - start) / 1_000_000, shared.size());
+    }
+}
@@ -0,0 +1,201 @@
+package problems;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Evicts the least frequently used entry, and among entries with the same frequency the least recently used one
+// (see the walkthrough in the README). Every operation is O(1):
+//  - entries with the same frequency share a bucket, which keeps them in LRU order
+//  - buckets form a doubly linked list in ascending frequency, so the victim is always in the first bucket
+//  - a hit moves the entry to the bucket for freq + 1, which is the next bucket or a new one inserted right after
+public class LFUCache<K, V> {
+    private final int capacity;
+    private final Map<K, Node<K, V>> map = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Bucket<K, V> buckets = new Bucket<>(0); // Sentinel, buckets.next has the lowest frequency
+
+    public LFUCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    public V get(K key) {
+        lock.lock();
+        try {
+            Node<K, V> node = map.get(key);
+            if (node == null) {
+                return null;
+            }
+            touch(node);
+            return node.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        lock.lock();
+        try {
+            Node<K, V> node = map.get(key);
+            if (node != null) {
+                node.value = value;
+                touch(node);
+                return;
+            }
+
+            if (map.size() >= capacity) {
+                Bucket<K, V> lowest = buckets.next;
+                Node<K, V> eldest = lowest.head.next; // LRU among the least frequently used
+                lowest.remove(eldest);
+                map.remove(eldest.key);
+                if (lowest.isEmpty()) {
+                    lowest.unlink();
+                }
+            }
+
+            Bucket<K, V> first = buckets.next;
+            if (first == buckets || first.frequency != 1) {
+                first = buckets.insertAfter(1);
+            }
+            node = new Node<>(key, value);
+            first.addLast(node);
+            map.put(key, node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return map.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns how often the key was used, 0 if it is not cached
+    public int frequency(K key) {
+        lock.lock();
+        try {
+            Node<K, V> node = map.get(key);
+            return node == null ? 0 : node.bucket.frequency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void touch(Node<K, V> node) {
+        Bucket<K, V> current = node.bucket;
+        Bucket<K, V> next = current.next;
+        if (next == buckets || next.frequency != current.frequency + 1) {
+            next = current.insertAfter(current.frequency + 1);
+        }
+        current.remove(node);
+        next.addLast(node);
+        if (current.isEmpty()) {
+            current.unlink();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            // In eviction order, next victim first
+            StringBuilder sb = new StringBuilder("{");
+            for (Bucket<K, V> bucket = buckets.next; bucket != buckets; bucket = bucket.next) {
+                for (Node<K, V> node = bucket.head.next; node != bucket.head; node = node.next) {
+                    if (sb.length() > 1) {
+                        sb.append(", ");
+                    }
+                    sb.append(node.key).append('=').append(node.value);
+                }
+            }
+            return sb.append('}').toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private V value;
+        private Bucket<K, V> bucket;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        private Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    // All entries used exactly `frequency` times, least recently used first
+    private static final class Bucket<K, V> {
+        private final int frequency;
+        private final Node<K, V> head = new Node<>(null, null);
+        private Bucket<K, V> prev = this;
+        private Bucket<K, V> next = this;
+
+        private Bucket(int frequency) {
+            this.frequency = frequency;
+            head.prev = head;
+            head.next = head;
+        }
+
+        private Bucket<K, V> insertAfter(int frequency) {
+            Bucket<K, V> bucket = new Bucket<>(frequency);
+            bucket.prev = this;
+            bucket.next = next;
+            next.prev = bucket;
+            next = bucket;
+            return bucket;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+        }
+
+        private boolean isEmpty() {
+            return head.next == head;
+        }
+
+        private void addLast(Node<K, V> node) {
+            node.bucket = this;
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+        }
+
+        private void remove(Node<K, V> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    public static void main(String[] args) {
+        // The README example, capacity = 2
+        LFUCache<Integer, Integer> cache = new LFUCache<>(2);
+
+        cache.put(1, 1);
+        cache.put(2, 2);
+        System.out.println(cache.get(1)); // 1
+        cache.put(3, 3); // evicts 2, the lowest frequency
+        System.out.println(cache.get(2)); // null
+        System.out.println(cache.get(3)); // 3
+        cache.put(4, 4); // 1 and 3 both used twice, evicts 1 as the LRU of the two
+        System.out.println(cache.get(1)); // null
+        System.out.println(cache.get(3)); // 3
+        System.out.println(cache.get(4)); // 4
+        System.out.println(cache); // {4=4, 3=3}
+        System.out.println("freq(3) = " + cache.frequency(3) + ", freq(4) = " + cache.frequency(4)); // 3 and 2
+    }
+}
@@ -1,56 +1,940 @@
 package problems;
 
+import problems.cache.CacheStats;
+import problems.cache.DiskSpillStore;
+import problems.cache.FrequencySketch;
+import problems.cache.OffHeapStore;
+import problems.cache.RemovalCause;
+import problems.cache.RemovalListener;
+import problems.cache.Serializer;
+import problems.cache.StatsCounter;
+import problems.cache.StoredEntry;
+import problems.cache.TimerWheel;
+import problems.cache.Weigher;
+import problems.rateLimiter.algorithms.Ticker;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Every operation runs under one lock: even get() reorders the recency lists, so a read lock is not enough.
+// See ConcurrentLRUCache for a variant whose reads don't lock.
+//
+// By default this is a plain LRU. With TinyLFU admission enabled (W-TinyLFU), new entries go through a small LRU
+// window (1% of the capacity) and then have to compete for a place in the main region: an entry leaving the window is
+// only admitted if a frequency sketch says it is used more often than the main region's eviction victim. A scan
+// therefore churns through the window without flushing the hot entries. The main region is a segmented LRU:
+// entries hit a second time move from probation to protected (80% of the main region).
+//
+// The cache is bounded either by entry count (capacity) or by total weight, with a Weigher telling how much each
+// entry weighs. Every list keeps the sum of its weights up to date on insert, replace and removal, so checking the
+// bound never walks the entries. An entry heavier than the whole cache is evicted right away.
+//
+// Entries can expire a fixed time after they were written (default or per entry) and/or after they were last read.
+// Deadlines live on a hierarchical timer wheel that every operation advances, so expired entries are reclaimed
+// within about a second in amortized O(1), without scanning the map. A cache that sits idle can call cleanUp().
+//
+// get(key, loader) loads missing entries itself. Concurrent misses on the same key share a single call to the
+// loader, which runs outside the cache lock. With refresh-after-write, a hit on an entry older than the refresh
+// interval keeps returning the current value while a reload runs in the background, so a hot entry is replaced
+// before it expires instead of missing.
+//
+// An optional off-heap tier keeps the heap small while the cache grows: entries evicted for size are serialized into
+// direct memory (OffHeapStore) instead of being dropped, and a miss that finds the key there promotes it back into
+// the heap, where it competes for its place like any new entry. An entry lives in exactly one of the two tiers.
+//
+// With stats recording on, stats() reports hits, misses, loads and evictions from LongAdder counters. A removal
+// listener hears about every entry that leaves the cache and why (RemovalCause), on the executor, so a slow
+// listener never holds up the cache. Moving an entry off-heap is not a removal.
+//
+// An optional disk tier (DiskSpillStore) goes one level further: entries that would leave the cache for size, from
+// the heap or from the off-heap tier, are appended to memory-mapped segment files and promoted back on a miss, so the
+// effective cache size grows to disk scale. Close the cache to stop its compaction thread and delete the files.
+//
+// getAll / putAll / invalidateAll handle a whole batch of keys under a single lock acquisition, and getAll can load
+// every miss of the batch with one call to a bulk loader.
+public class LRUCache<K, V> implements AutoCloseable {
+
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private final long maximumWeight;
+    private final Weigher<? super K, ? super V> weigher;
+    private final Map<K, Node<K, V>> map;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // With admission disabled every entry lives in the window, which is then the whole cache
+    private final FrequencySketch<K> sketch;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final NodeList<K, V> window = new NodeList<>();
+    private final NodeList<K, V> probation = new NodeList<>();
+    private final NodeList<K, V> protectedList = new NodeList<>();
 
-public class LRUCache<K, V> {
-    private final int capacity;
-    private final Map<K, V> map;
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Ticker ticker;
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final TimerWheel<Node<K, V>> timerWheel;
+    private final Consumer<Node<K, V>> onExpired = this::removeExpired;
+
+    private final long refreshAfterWriteNanos;
+    private final Executor executor; // Runs refreshes and removal notifications
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    private final OffHeapStore<K, V> offHeap;
+    private final DiskSpillStore<K, V> disk;
+
+    private final StatsCounter stats; // Null unless recording
+    private final RemovalListener<? super K, ? super V> removalListener;
 
     public LRUCache(int capacity) {
-        this.capacity = capacity;
-        this.map = new LinkedHashMap<>(capacity, 0.75f, true);
+        this(new LRUCacheBuilder<K, V>().setCapacity(capacity));
+    }
+
+    private LRUCache(LRUCacheBuilder<K, V> builder) {
+        if (builder.maximumWeight <= 0) {
+            throw new IllegalArgumentException("capacity or maximumWeight must be positive");
+        }
+        if (builder.weigher != null && builder.capacity > 0) {
+            throw new IllegalArgumentException("A weigher needs maximumWeight, not capacity");
+        }
+        this.maximumWeight = builder.maximumWeight;
+        this.weigher = builder.weigher != null ? builder.weigher : Weigher.singleton();
+        this.map = new HashMap<>();
+        if (builder.tinyLfuAdmission) {
+            // Sized by the expected number of entries, which a weight alone doesn't give
+            this.sketch = new FrequencySketch<>(builder.capacity > 0 ? builder.capacity : Math.min(maximumWeight, 1 << 20));
+            this.windowMaximum = Math.max(1, maximumWeight / 100);
+            this.protectedMaximum = (maximumWeight - windowMaximum) * 4 / 5;
+        } else {
+            this.sketch = null;
+            this.windowMaximum = maximumWeight;
+            this.protectedMaximum = 0;
+        }
+        this.ticker = builder.ticker;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        this.timerWheel = new TimerWheel<>(ticker.read());
+        this.refreshAfterWriteNanos = builder.refreshAfterWriteNanos;
+        this.executor = builder.executor;
+        this.stats = builder.recordStats ? new StatsCounter() : null;
+        this.removalListener = builder.removalListener;
+        boolean needsEvicted = stats != null || removalListener != null;
+        this.disk = builder.diskDirectory != null
+                ? new DiskSpillStore<>(builder.diskDirectory, builder.diskBytes,
+                        (int) Math.min(64 << 20, builder.diskBytes / 4), builder.serializer,
+                        needsEvicted ? this::onDiskEviction : null)
+                : null;
+        this.offHeap = builder.offHeapBytes > 0
+                ? new OffHeapStore<>(builder.offHeapBytes, builder.serializer,
+                        needsEvicted || disk != null ? this::onOffHeapEviction : null)
+                : null;
     }
 
     public V get(K key) {
-        lock.readLock().lock();
+        lock.lock();
+        try {
+            Node<K, V> node = getNode(key, ticker.read());
+            return node == null ? null : node.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns the cached value, or loads it with the loader on a miss. A loader returning null caches nothing.
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value;
+        Node<K, V> refreshed = null;
+        long refreshedWrite = 0;
+        lock.lock();
+        try {
+            long now = ticker.read();
+            Node<K, V> node = getNode(key, now);
+            if (node != null) {
+                value = node.value;
+                if (refreshAfterWriteNanos > 0 && now - node.writtenAt >= refreshAfterWriteNanos) {
+                    refreshed = node;
+                    refreshedWrite = node.writtenAt;
+                }
+            } else {
+                value = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (value != null) {
+            if (refreshed != null) {
+                refreshAsync(key, loader, refreshed, refreshedWrite);
+            }
+            return value;
+        }
+        return load(key, loader);
+    }
+
+    // Returns the cached values of the keys that are present, looked up under one lock acquisition
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        Map<K, V> result = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            long now = ticker.read();
+            for (K key : keys) {
+                Node<K, V> node = getNode(key, now);
+                if (node != null) {
+                    result.put(key, node.value);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    // Returns the values of all the keys, loading every miss with a single call to the bulk loader, which returns
+    // the values it found (keys it leaves out stay uncached and absent from the result). Keys another thread is
+    // already loading are waited for instead of loaded twice.
+    public Map<K, V> getAll(Iterable<? extends K> keys,
+                            Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> bulkLoader) {
+        List<K> requested = new ArrayList<>(); // Iterated twice, and the Iterable may only allow once
+        keys.forEach(requested::add);
+        Map<K, V> result = getAll(requested);
+        Map<K, CompletableFuture<V>> ours = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> theirs = new LinkedHashMap<>();
+        for (K key : requested) {
+            if (result.containsKey(key) || ours.containsKey(key) || theirs.containsKey(key)) {
+                continue;
+            }
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> inFlight = loading.putIfAbsent(key, future);
+            if (inFlight == null) {
+                ours.put(key, future);
+            } else {
+                theirs.put(key, inFlight);
+            }
+        }
+
+        if (!ours.isEmpty()) {
+            Map<? extends K, ? extends V> loaded = null;
+            long start = System.nanoTime();
+            try {
+                loaded = bulkLoader.apply(Collections.unmodifiableSet(ours.keySet()));
+                if (stats != null) {
+                    stats.recordLoadSuccess(System.nanoTime() - start);
+                }
+                Map<K, V> found = new LinkedHashMap<>();
+                for (Map.Entry<? extends K, ? extends V> entry : loaded.entrySet()) {
+                    if (entry.getValue() != null) {
+                        found.put(entry.getKey(), entry.getValue()); // A null is "not found", never cached
+                    }
+                }
+                putAll(found);
+            } catch (RuntimeException | Error e) {
+                if (stats != null && loaded == null) {
+                    stats.recordLoadFailure(System.nanoTime() - start);
+                }
+                for (Map.Entry<K, CompletableFuture<V>> entry : ours.entrySet()) {
+                    loading.remove(entry.getKey(), entry.getValue());
+                    entry.getValue().completeExceptionally(e);
+                }
+                throw e;
+            }
+            for (Map.Entry<K, CompletableFuture<V>> entry : ours.entrySet()) {
+                V value = loaded.get(entry.getKey());
+                if (value != null) {
+                    result.put(entry.getKey(), value);
+                }
+                loading.remove(entry.getKey(), entry.getValue());
+                entry.getValue().complete(value);
+            }
+        }
+
+        for (Map.Entry<K, CompletableFuture<V>> entry : theirs.entrySet()) {
+            try {
+                V value = entry.getValue().join();
+                if (value != null) {
+                    result.put(entry.getKey(), value);
+                }
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        return result;
+    }
+
+    // Caller holds the lock
+    private Node<K, V> getNode(K key, long now) {
+        timerWheel.advance(now, onExpired);
+        if (sketch != null) {
+            sketch.increment(key); // Misses count too, a key that keeps missing deserves a place
+        }
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            node = offHeap != null || disk != null ? promote(key, now) : null;
+            if (stats != null) {
+                if (node != null) {
+                    stats.recordHits(1);
+                } else {
+                    stats.recordMisses(1);
+                }
+            }
+            return node;
+        }
+        if (node.isScheduled() && node.getExpiresAt() - now <= 0) {
+            timerWheel.cancel(node); // Due, but its wheel bucket has not been reached yet
+            removeExpired(node);
+            if (stats != null) {
+                stats.recordMisses(1);
+            }
+            return null;
+        }
+        if (stats != null) {
+            stats.recordHits(1);
+        }
+        onAccess(node);
+        if (expireAfterAccessNanos > 0) {
+            scheduleExpiry(node, now);
+        }
+        return node;
+    }
+
+    // Single-flight: the first thread to miss runs the loader, the others wait for its result
+    private V load(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
         try {
-            return map.getOrDefault(key, null);
+            V value = peek(key); // Another load may have finished between our miss and claiming the key
+            if (value == null) {
+                value = timedLoad(key, loader);
+                if (value != null) {
+                    put(key, value);
+                }
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
         } finally {
-            lock.readLock().unlock();
+            loading.remove(key, future);
+        }
+    }
+
+    // Reloads in the background and keeps serving the current value meanwhile. Skipped if a load is already running.
+    private void refreshAsync(K key, Function<? super K, ? extends V> loader, Node<K, V> node, long writtenAt) {
+        if (loading.containsKey(key)) {
+            return;
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        if (loading.putIfAbsent(key, future) != null) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    V value = timedLoad(key, loader);
+                    if (value != null) {
+                        replaceIfUnchanged(key, node, writtenAt, value);
+                    }
+                    future.complete(value);
+                } catch (RuntimeException | Error e) {
+                    future.completeExceptionally(e); // The current value stays, the next hit retries
+                } finally {
+                    loading.remove(key, future);
+                }
+            });
+        } catch (RuntimeException e) {
+            loading.remove(key, future); // Executor rejected the task
+            future.completeExceptionally(e);
+        }
+    }
+
+    private V timedLoad(K key, Function<? super K, ? extends V> loader) {
+        if (stats == null) {
+            return loader.apply(key);
+        }
+        long start = System.nanoTime();
+        V value = null;
+        try {
+            value = loader.apply(key);
+            return value;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (value != null) {
+                stats.recordLoadSuccess(elapsed);
+            } else {
+                stats.recordLoadFailure(elapsed);
+            }
+        }
+    }
+
+    // Stores a refreshed value unless the entry was written or removed while it was loading
+    private void replaceIfUnchanged(K key, Node<K, V> expected, long writtenAt, V value) {
+        lock.lock();
+        try {
+            if (map.get(key) == expected && expected.writtenAt == writtenAt) {
+                put(key, value);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Reads without counting as an access
+    private V peek(K key) {
+        lock.lock();
+        try {
+            Node<K, V> node = map.get(key);
+            boolean expired = node != null && node.isScheduled() && node.getExpiresAt() - ticker.read() <= 0;
+            return node == null || expired ? null : node.value;
+        } finally {
+            lock.unlock();
         }
     }
 
     public void put(K key, V value) {
-        lock.writeLock().lock();
+        put(key, value, 0);
+    }
+
+    // Stores an entry that expires after the given time, instead of the cache's default expire-after-write
+    public void put(K key, V value, long ttl, TimeUnit unit) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        put(key, value, unit.toNanos(ttl));
+    }
+
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        lock.lock();
         try {
-            // update if cache contains they key, after update LinkedHashMap updates the order
-            if (map.containsKey(key)) {
-                map.put(key, value);
-                return;
+            long now = ticker.read();
+            timerWheel.advance(now, onExpired);
+            for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+                if (sketch != null) {
+                    sketch.increment(entry.getKey());
+                }
+                store(entry.getKey(), entry.getValue(), now, expireAfterWriteNanos, now);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(K key, V value, long ttlNanos) {
+        lock.lock();
+        try {
+            long now = ticker.read();
+            timerWheel.advance(now, onExpired);
+            if (sketch != null) {
+                sketch.increment(key);
             }
+            store(key, value, now, ttlNanos > 0 ? ttlNanos : expireAfterWriteNanos, now);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            // If the cache does not contain the key, check the size and update
-            if (map.size() >= capacity) {
-                K eldestKey = map.keySet().iterator().next();
-                map.remove(eldestKey);
+    // Inserts or replaces an entry, then evicts down to the bound. Returns null if the entry weighs more than the
+    // whole cache. Caller holds the lock.
+    private Node<K, V> store(K key, V value, long writtenAt, long ttlNanos, long now) {
+        int weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Negative weight for key " + key);
+        }
+        if (weight > maximumWeight) {
+            // Could never fit: dropped right away, instead of evict() flushing everything else to make room for it
+            Node<K, V> stale = map.remove(key);
+            if (stale != null) {
+                listOf(stale).remove(stale);
+                timerWheel.cancel(stale);
+                notifyRemoval(key, stale.value, RemovalCause.REPLACED);
+            } else {
+                removeSpilled(key, RemovalCause.REPLACED);
             }
+            evicted(key, value, RemovalCause.SIZE);
+            return null;
+        }
+        Node<K, V> node = map.get(key);
+        if (node != null) {
+            V replaced = node.value;
+            node.value = value;
+            listOf(node).reweigh(node, weight);
+            onAccess(node);
+            if (replaced != value) {
+                notifyRemoval(key, replaced, RemovalCause.REPLACED);
+            }
+        } else {
+            node = new Node<>(key, value, weight);
+            map.put(key, node);
+            window.addLast(node);
+            removeSpilled(key, RemovalCause.REPLACED); // A copy in a lower tier is stale now
+        }
+        node.writtenAt = writtenAt;
+        node.ttlNanos = ttlNanos;
+        scheduleExpiry(node, now);
+        evict();
+        return node;
+    }
+
+    // Moves an entry from the off-heap or disk tier back to the heap. Caller holds the lock.
+    private Node<K, V> promote(K key, long now) {
+        StoredEntry<V> entry = offHeap != null ? offHeap.take(key) : null;
+        if (entry == null && disk != null) {
+            entry = disk.take(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(now)) {
+            evicted(key, entry.getValue(), RemovalCause.EXPIRED); // Expired while in a lower tier
+            return null;
+        }
+        return store(key, entry.getValue(), entry.getWrittenAt(), entry.getTtlNanos(), now);
+    }
+
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll(Iterable<? extends K> keys) {
+        lock.lock();
+        try {
+            for (K key : keys) {
+                remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds the lock
+    private void remove(K key) {
+        Node<K, V> node = map.remove(key);
+        if (node != null) {
+            listOf(node).remove(node);
+            timerWheel.cancel(node);
+            notifyRemoval(key, node.value, RemovalCause.EXPLICIT);
+        } else {
+            removeSpilled(key, RemovalCause.EXPLICIT);
+        }
+    }
+
+    // Counters since the cache was built, all zero unless stats recording is on
+    public CacheStats stats() {
+        return (stats != null ? stats : new StatsCounter()).snapshot();
+    }
+
+    // Reclaims entries that have expired. Every other operation does it too, so only idle caches need to call it.
+    public void cleanUp() {
+        lock.lock();
+        try {
+            timerWheel.advance(ticker.read(), onExpired);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            timerWheel.advance(ticker.read(), onExpired);
+            return map.size();
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            map.put(key, value);
+    // Number of entries in the disk tier, not counted by size()
+    public int diskSize() {
+        return disk == null ? 0 : disk.size();
+    }
 
+    // Stops the disk tier's compaction and deletes its files
+    @Override
+    public void close() {
+        if (disk != null) {
+            disk.close();
+        }
+    }
+
+    // Number of entries in the off-heap tier, not counted by size()
+    public int offHeapSize() {
+        lock.lock();
+        try {
+            return offHeap == null ? 0 : offHeap.size();
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
+        }
+    }
+
+    // Sum of the weights of all entries
+    public long weightedSize() {
+        lock.lock();
+        try {
+            return window.weight + probation.weight + protectedList.weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The entry expires at the earliest of its write deadline and, with expire-after-access, one TTL after now
+    private void scheduleExpiry(Node<K, V> node, long now) {
+        boolean expires = node.ttlNanos > 0;
+        long expiresAt = node.writtenAt + node.ttlNanos;
+        if (expireAfterAccessNanos > 0) {
+            long idleDeadline = now + expireAfterAccessNanos;
+            if (!expires || idleDeadline - expiresAt < 0) {
+                expiresAt = idleDeadline;
+            }
+            expires = true;
+        }
+        if (expires) {
+            timerWheel.schedule(node, expiresAt);
+        } else {
+            timerWheel.cancel(node);
+        }
+    }
+
+    private void removeExpired(Node<K, V> node) {
+        listOf(node).remove(node);
+        map.remove(node.key);
+        evicted(node.key, node.value, RemovalCause.EXPIRED);
+    }
+
+    // Drops an entry evicted for size, which was already unlinked from its list, or demotes it off-heap
+    private void discard(Node<K, V> node) {
+        map.remove(node.key);
+        timerWheel.cancel(node);
+        if (offHeap != null && offHeap.put(node.key, node.value, node.writtenAt, node.ttlNanos)) {
+            return;
+        }
+        if (disk != null && disk.put(node.key, node.value, node.writtenAt, node.ttlNanos)) {
+            return;
+        }
+        evicted(node.key, node.value, RemovalCause.SIZE);
+    }
+
+    private void onOffHeapEviction(K key, StoredEntry<V> entry) {
+        if (disk == null || !disk.put(key, entry.getValue(), entry.getWrittenAt(), entry.getTtlNanos())) {
+            evicted(key, entry.getValue(), RemovalCause.SIZE);
+        }
+    }
+
+    // Only a put into the disk tier drops its oldest segment, so this runs under the cache lock like any other eviction.
+    // Compaction never evicts.
+    private void onDiskEviction(K key, StoredEntry<V> entry) {
+        evicted(key, entry.getValue(), RemovalCause.SIZE);
+    }
+
+    private void removeSpilled(K key, RemovalCause cause) {
+        if (removalListener == null) {
+            boolean removed = offHeap != null && offHeap.remove(key);
+            if (!removed && disk != null) {
+                disk.remove(key);
+            }
+            return;
         }
+        StoredEntry<V> entry = offHeap != null ? offHeap.take(key) : null; // Read back only because someone listens
+        if (entry == null && disk != null) {
+            entry = disk.take(key);
+        }
+        if (entry != null) {
+            notifyRemoval(key, entry.getValue(), cause);
+        }
+    }
+
+    private void evicted(K key, V value, RemovalCause cause) {
+        if (stats != null) {
+            stats.recordEviction(weigher.weigh(key, value));
+        }
+        notifyRemoval(key, value, cause);
+    }
+
+    private void notifyRemoval(K key, V value, RemovalCause cause) {
+        if (removalListener != null) {
+            executor.execute(() -> removalListener.onRemoval(key, value, cause));
+        }
+    }
+
+    private NodeList<K, V> listOf(Node<K, V> node) {
+        return node.queue == WINDOW ? window : node.queue == PROBATION ? probation : protectedList;
+    }
+
+    private void onAccess(Node<K, V> node) {
+        if (node.queue == WINDOW) {
+            window.moveToTail(node);
+        } else if (node.queue == PROBATION) {
+            // Second hit in the main region: promote, and make room by demoting the protected LRU
+            probation.remove(node);
+            node.queue = PROTECTED;
+            protectedList.addLast(node);
+        } else {
+            protectedList.moveToTail(node);
+        }
+        while (protectedList.weight > protectedMaximum && protectedList.head.next != node) {
+            Node<K, V> demoted = protectedList.head.next;
+            protectedList.remove(demoted);
+            demoted.queue = PROBATION;
+            probation.addLast(demoted);
+        }
+    }
+
+    private void evict() {
+        while (window.weight > windowMaximum) {
+            Node<K, V> candidate = window.head.next;
+            window.remove(candidate);
+            if (sketch == null) {
+                discard(candidate);
+            } else {
+                admit(candidate);
+            }
+        }
+
+        // A replaced value may have grown an entry of the main region past the bound
+        while (window.weight + probation.weight + protectedList.weight > maximumWeight) {
+            NodeList<K, V> list = probation.size > 0 ? probation : protectedList.size > 0 ? protectedList : window;
+            Node<K, V> victim = list.head.next;
+            list.remove(victim);
+            discard(victim);
+        }
+    }
+
+    // Moves an entry leaving the window into the main region, if it is used more often than the victims it replaces
+    private void admit(Node<K, V> candidate) {
+        long mainMaximum = maximumWeight - windowMaximum;
+        if (candidate.weight > mainMaximum) {
+            discard(candidate); // Emptying the main region would not make room for it
+            return;
+        }
+        while (probation.weight + protectedList.weight + candidate.weight > mainMaximum) {
+            NodeList<K, V> victimList = probation.size > 0 ? probation : protectedList;
+            if (victimList.size == 0 || sketch.frequency(candidate.key) <= sketch.frequency(victimList.head.next.key)) {
+                discard(candidate);
+                return;
+            }
+            Node<K, V> victim = victimList.head.next;
+            victimList.remove(victim);
+            discard(victim);
+        }
+        candidate.queue = PROBATION;
+        probation.addLast(candidate);
     }
 
     @Override
     public String toString() {
-        return map.toString();
+        lock.lock();
+        try {
+            // Roughly in eviction order, next victim first
+            StringBuilder sb = new StringBuilder("{");
+            for (NodeList<K, V> list : Arrays.asList(probation, protectedList, window)) {
+                for (Node<K, V> node = list.head.next; node != list.head; node = node.next) {
+                    if (sb.length() > 1) {
+                        sb.append(", ");
+                    }
+                    sb.append(node.key).append('=').append(node.value);
+                }
+            }
+            return sb.append('}').toString();
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public static void main(String[] args) {
+    private static final class Node<K, V> extends TimerWheel.Timer {
+        private final K key;
+        private V value;
+        private int weight;
+        private long writtenAt;
+        private long ttlNanos; // 0 if the entry only expires after access, or never
+        private byte queue = WINDOW;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        private Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    // Circular doubly linked list around a sentinel, least recently used first
+    private static final class NodeList<K, V> {
+        private final Node<K, V> head = new Node<>(null, null, 0);
+        private int size;
+        private long weight;
+
+        private NodeList() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        private void addLast(Node<K, V> node) {
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+            size++;
+            weight += node.weight;
+        }
+
+        private void remove(Node<K, V> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            size--;
+            weight -= node.weight;
+        }
+
+        private void reweigh(Node<K, V> node, int newWeight) {
+            weight += newWeight - node.weight;
+            node.weight = newWeight;
+        }
+
+        private void moveToTail(Node<K, V> node) {
+            if (head.prev != node) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    public static class LRUCacheBuilder<K, V> {
+        private int capacity;
+        private long maximumWeight;
+        private Weigher<? super K, ? super V> weigher;
+        private boolean tinyLfuAdmission;
+        private Ticker ticker = Ticker.system();
+        private long expireAfterWriteNanos;
+        private long expireAfterAccessNanos;
+        private long refreshAfterWriteNanos;
+        private Executor executor = ForkJoinPool.commonPool();
+        private long offHeapBytes;
+        private Path diskDirectory;
+        private long diskBytes;
+        private Serializer<V> serializer;
+        private boolean recordStats;
+        private RemovalListener<? super K, ? super V> removalListener;
+
+        // Bounds the number of entries
+        public LRUCacheBuilder<K, V> setCapacity(int capacity) {
+            this.capacity = capacity;
+            this.maximumWeight = capacity;
+            return this;
+        }
+
+        // Bounds the total weight of the entries, as given by the weigher
+        public LRUCacheBuilder<K, V> setMaximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        public LRUCacheBuilder<K, V> setWeigher(Weigher<? super K, ? super V> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public LRUCacheBuilder<K, V> setTinyLfuAdmission(boolean tinyLfuAdmission) {
+            this.tinyLfuAdmission = tinyLfuAdmission;
+            return this;
+        }
+
+        // Default time to live of an entry, counted from when it was last written
+        public LRUCacheBuilder<K, V> setExpireAfterWrite(long duration, TimeUnit unit) {
+            this.expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        // Entries not read or written for this long expire
+        public LRUCacheBuilder<K, V> setExpireAfterAccess(long duration, TimeUnit unit) {
+            this.expireAfterAccessNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        // get(key, loader) reloads entries older than this in the background, keep it below the expire-after-write
+        public LRUCacheBuilder<K, V> setRefreshAfterWrite(long duration, TimeUnit unit) {
+            this.refreshAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        // Runs background refreshes and removal notifications, the common pool by default
+        public LRUCacheBuilder<K, V> setExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        // Demotes entries evicted from the heap into up to maximumBytes of direct memory. Values that serialize to
+        // more than OffHeapStore.MAX_VALUE_BYTES (1 MB less a 16-byte header) skip this tier: they go to the disk tier
+        // if there is one, and are evicted otherwise.
+        public LRUCacheBuilder<K, V> setOffHeapTier(long maximumBytes, Serializer<V> serializer) {
+            this.offHeapBytes = maximumBytes;
+            this.serializer = serializer;
+            return this;
+        }
+
+        // Spills entries that leave the heap and off-heap tiers into up to maximumBytes of segment files
+        public LRUCacheBuilder<K, V> setDiskSpillTier(Path directory, long maximumBytes, Serializer<V> serializer) {
+            this.diskDirectory = directory;
+            this.diskBytes = maximumBytes;
+            this.serializer = serializer;
+            return this;
+        }
+
+        public LRUCacheBuilder<K, V> setRecordStats(boolean recordStats) {
+            this.recordStats = recordStats;
+            return this;
+        }
+
+        public LRUCacheBuilder<K, V> setRemovalListener(RemovalListener<? super K, ? super V> removalListener) {
+            this.removalListener = removalListener;
+            return this;
+        }
+
+        public LRUCacheBuilder<K, V> setTicker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public LRUCache<K, V> build() {
+            return new LRUCache<>(this);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
         LRUCache<Integer, String> cache = new LRUCache<>(3);
 
         cache.put(1, "A");
@@ -61,5 +945,149 @@ public class LRUCache<K, V> {
         System.out.println(cache.get(1));
         cache.put(4, "D"); // evicts 2 (the LRU)
         System.out.println(cache); // {3=C, 1=A, 4=D}
+
+        System.out.println("\n--- Bounded by the total length of the values ---");
+        LRUCache<String, String> pages = new LRUCacheBuilder<String, String>()
+                .setMaximumWeight(20).setWeigher((path, body) -> body.length()).build();
+        pages.put("/home", "0123456789");
+        pages.put("/about", "01234");
+        System.out.println(pages + ", weight " + pages.weightedSize()); // 15
+        pages.put("/about", "0123456789"); // Growing /about pushes the total to 20, still fits
+        pages.put("/docs", "01234"); // 25 > 20, evicts /home
+        System.out.println(pages + ", weight " + pages.weightedSize()); // {/about=..., /docs=...}, weight 15
+
+        System.out.println("\n--- Expiry on a manual clock ---");
+        AtomicLong clock = new AtomicLong();
+        LRUCache<String, String> sessions = new LRUCacheBuilder<String, String>()
+                .setCapacity(100_000).setExpireAfterWrite(10, TimeUnit.MINUTES).setTicker(clock::get).build();
+        sessions.put("alice", "token-1");
+        sessions.put("bob", "token-2", 1, TimeUnit.HOURS); // Per-entry TTL
+        for (int i = 0; i < 50_000; i++) {
+            sessions.put("guest-" + i, "token");
+        }
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        System.out.println("After 5 min: alice=" + sessions.get("alice") + ", entries " + sessions.size());
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(6));
+        sessions.cleanUp(); // Idle cache, nothing else advances the wheel
+        System.out.println("After 11 min: alice=" + sessions.get("alice") + ", bob=" + sessions.get("bob")
+                + ", entries " + sessions.size()); // Only bob is left
+        clock.addAndGet(TimeUnit.HOURS.toNanos(1));
+        System.out.println("After 1 h 11 min: bob=" + sessions.get("bob") + ", entries " + sessions.size());
+
+        System.out.println("\n--- 16 threads missing the same key ---");
+        LRUCache<String, String> users = new LRUCacheBuilder<String, String>()
+                .setCapacity(1000).setExpireAfterWrite(2, TimeUnit.MINUTES).setRefreshAfterWrite(1, TimeUnit.MINUTES)
+                .setExecutor(Runnable::run).setTicker(clock::get).setRecordStats(true).build();
+        AtomicInteger databaseCalls = new AtomicInteger();
+        Function<String, String> database = id -> {
+            databaseCalls.incrementAndGet();
+            try {
+                Thread.sleep(100); // Slow query
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return id + "@v" + databaseCalls.get();
+        };
+        CountDownLatch done = new CountDownLatch(16);
+        for (int i = 0; i < 16; i++) {
+            new Thread(() -> {
+                users.get("user-1", database);
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        System.out.println("Database calls: " + databaseCalls.get()); // 1
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(70)); // Past the refresh interval, not expired yet
+        System.out.println("Stale read: " + users.get("user-1", database)); // user-1@v1, refresh runs
+        System.out.println("Refreshed: " + users.get("user-1", database) + ", database calls: " + databaseCalls.get());
+        System.out.println(users.stats());
+
+        System.out.println("\n--- Removal listener closing evicted connections ---");
+        LRUCache<String, String> connections = new LRUCacheBuilder<String, String>()
+                .setCapacity(2).setExecutor(Runnable::run)
+                .setRemovalListener((host, connection, cause) -> System.out.println("  close " + connection + " (" + cause + ")"))
+                .build();
+        connections.put("db-1", "conn-1");
+        connections.put("db-2", "conn-2");
+        connections.put("db-1", "conn-3"); // REPLACED
+        connections.put("db-3", "conn-4"); // SIZE evicts db-2
+        connections.invalidate("db-1"); // EXPLICIT
+
+        System.out.println("\n--- 1000 entries on the heap, the rest off-heap ---");
+        LRUCache<Integer, String> documents = new LRUCacheBuilder<Integer, String>()
+                .setCapacity(1000).setOffHeapTier(64L << 20, Serializer.strings()).build();
+        for (int i = 0; i < 50_000; i++) {
+            documents.put(i, "document body #" + i);
+        }
+        System.out.println("Heap " + documents.size() + ", off-heap " + documents.offHeapSize());
+        System.out.println("get(7) = " + documents.get(7) + " (promoted)");
+        System.out.println("Heap " + documents.size() + ", off-heap " + documents.offHeapSize());
+
+        System.out.println("\n--- Spilling to disk ---");
+        Path spillDirectory = Files.createTempDirectory("cache-spill");
+        try (LRUCache<Integer, String> reports = new LRUCacheBuilder<Integer, String>()
+                .setCapacity(1000).setDiskSpillTier(spillDirectory, 256L << 20, Serializer.strings()).build()) {
+            for (int i = 0; i < 100_000; i++) {
+                reports.put(i, "report #" + i);
+            }
+            System.out.println("Heap " + reports.size() + ", disk " + reports.diskSize());
+            System.out.println("get(42) = " + reports.get(42) + " (read back from disk)");
+        } finally {
+            Files.deleteIfExists(spillDirectory);
+        }
+
+        System.out.println("\n--- Fan-out of 200 keys, one lock and one backend call ---");
+        LRUCache<Integer, String> profiles = new LRUCache<>(10_000);
+        List<Integer> fanOut = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            fanOut.add(i);
+            if (i % 2 == 0) {
+                profiles.put(i, "profile " + i); // Half of them are cached already
+            }
+        }
+        AtomicInteger backendCalls = new AtomicInteger();
+        Map<Integer, String> fetched = profiles.getAll(fanOut, missing -> {
+            backendCalls.incrementAndGet();
+            Map<Integer, String> rows = new HashMap<>();
+            for (Integer id : missing) {
+                rows.put(id, "profile " + id);
+            }
+            return rows;
+        });
+        System.out.println(fetched.size() + " profiles, " + backendCalls.get() + " backend call, "
+                + profiles.getAll(fanOut).size() + " now cached");
+        profiles.invalidateAll(fanOut.subList(0, 100));
+        System.out.println(profiles.size() + " left after invalidating 100");
+
+        System.out.println("\n--- Skewed traffic with a nightly scan ---");
+        for (boolean tinyLfu : new boolean[]{false, true}) {
+            LRUCache<Integer, Integer> shared = new LRUCacheBuilder<Integer, Integer>()
+                    .setCapacity(1000).setTinyLfuAdmission(tinyLfu).build();
+            Random random = new Random(42);
+            int hits = 0;
+            int requests = 0;
+            int scanKey = 1_000_000;
+            for (int i = 0; i < 500_000; i++) {
+                // Every 50k requests a batch report reads 5000 keys nobody asks for again
+                if (i % 50_000 == 0) {
+                    for (int j = 0; j < 5000; j++) {
+                        if (shared.get(scanKey) == null) {
+                            shared.put(scanKey, scanKey);
+                        }
+                        scanKey++;
+                    }
+                }
+                // Popularity falls off like 1/rank over 20k keys
+                int key = (int) Math.pow(20_000, random.nextDouble());
+                requests++;
+                if (shared.get(key) != null) {
+                    hits++;
+                } else {
+                    shared.put(key, key);
+                }
+            }
+            System.out.printf("%-10s hit rate %.1f%%%n", tinyLfu ? "W-TinyLFU" : "LRU", hits * 100.0 / requests);
+        }
     }
 }
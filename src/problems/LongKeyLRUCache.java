@@ -0,0 +1,265 @@
+package problems;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.locks.ReentrantLock;
+
+// LRU cache for primitive long keys that never allocates after construction. Entries live in parallel arrays indexed
+// by entry number (key, value, previous and next entry in LRU order), and an open-addressed hash table maps a key to
+// its entry number. Nothing is boxed and there is no per-entry object: about 30 bytes per entry with compressed oops,
+// against ~70 for a LinkedHashMap<Long, V> entry and its boxed key.
+//
+// The table uses linear probing at most 50% full, and deletes by shifting the following entries of the cluster back
+// instead of leaving tombstones, so lookups never slow down as keys churn.
+public class LongKeyLRUCache<V> {
+    private static final int NIL = -1;
+
+    private final int capacity;
+    private final long[] keys;
+    private final Object[] values;
+    private final int[] prev;
+    private final int[] next; // Also chains the free entries
+    private final int[] table; // Entry number + 1, 0 for an empty slot
+    private final int tableMask;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private int head = NIL; // Least recently used
+    private int tail = NIL;
+    private int size;
+    private int free;
+
+    public LongKeyLRUCache(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 29) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^29");
+        }
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            next[i] = i + 1 < capacity ? i + 1 : NIL;
+        }
+        this.free = 0;
+        this.table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        this.tableMask = table.length - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        lock.lock();
+        try {
+            int slot = slotOf(key);
+            if (slot < 0) {
+                return null;
+            }
+            int entry = table[slot] - 1;
+            moveToTail(entry);
+            return (V) values[entry];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(long key, V value) {
+        lock.lock();
+        try {
+            int slot = slotOf(key);
+            if (slot >= 0) {
+                int entry = table[slot] - 1;
+                values[entry] = value;
+                moveToTail(entry);
+                return;
+            }
+
+            if (size == capacity) {
+                int eldest = head;
+                delete(slotOf(keys[eldest]));
+                unlink(eldest);
+                values[eldest] = null;
+                next[eldest] = free;
+                free = eldest;
+                size--;
+                slot = slotOf(key); // The shift may have moved the insertion point
+            }
+
+            int entry = free;
+            free = next[entry];
+            keys[entry] = key;
+            values[entry] = value;
+            linkLast(entry);
+            table[~slot] = entry + 1;
+            size++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean remove(long key) {
+        lock.lock();
+        try {
+            int slot = slotOf(key);
+            if (slot < 0) {
+                return false;
+            }
+            int entry = table[slot] - 1;
+            delete(slot);
+            unlink(entry);
+            values[entry] = null;
+            next[entry] = free;
+            free = entry;
+            size--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns the slot holding the key, or ~slot of the empty slot where it would be inserted
+    private int slotOf(long key) {
+        int slot = hash(key) & tableMask;
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return ~slot;
+            }
+            if (keys[entry - 1] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+    }
+
+    // Backward-shift deletion: pulls every later entry of the cluster that may move closer to its home slot into
+    // the hole, so the cluster stays contiguous and no tombstone is needed
+    private void delete(int slot) {
+        int hole = slot;
+        int current = slot;
+        while (true) {
+            current = (current + 1) & tableMask;
+            int entry = table[current];
+            if (entry == 0) {
+                break;
+            }
+            int home = hash(keys[entry - 1]) & tableMask;
+            if (((current - home) & tableMask) >= ((current - hole) & tableMask)) {
+                table[hole] = entry;
+                hole = current;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private void linkLast(int entry) {
+        prev[entry] = tail;
+        next[entry] = NIL;
+        if (tail == NIL) {
+            head = entry;
+        } else {
+            next[tail] = entry;
+        }
+        tail = entry;
+    }
+
+    private void unlink(int entry) {
+        if (prev[entry] == NIL) {
+            head = next[entry];
+        } else {
+            next[prev[entry]] = next[entry];
+        }
+        if (next[entry] == NIL) {
+            tail = prev[entry];
+        } else {
+            prev[next[entry]] = prev[entry];
+        }
+    }
+
+    private void moveToTail(int entry) {
+        if (entry != tail) {
+            unlink(entry);
+            linkLast(entry);
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            StringBuilder sb = new StringBuilder("{");
+            for (int entry = head; entry != NIL; entry = next[entry]) {
+                sb.append(keys[entry]).append('=').append(values[entry]);
+                if (next[entry] != NIL) {
+                    sb.append(", ");
+                }
+            }
+            return sb.append('}').toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static void main(String[] args) {
+        LongKeyLRUCache<String> cache = new LongKeyLRUCache<>(3);
+
+        cache.put(1, "A");
+        cache.put(2, "B");
+        cache.put(3, "C");
+        System.out.println(cache); // {1=A, 2=B, 3=C}
+
+        System.out.println(cache.get(1));
+        cache.put(4, "D"); // evicts 2 (the LRU)
+        System.out.println(cache); // {3=C, 1=A, 4=D}
+
+        System.out.println("\n--- Allocation on the hot path ---");
+        LongKeyLRUCache<String> ids = new LongKeyLRUCache<>(100_000);
+        String value = "user";
+        long[] workload = new long[1 << 20];
+        for (int i = 0; i < workload.length; i++) {
+            workload[i] = (long) (Math.random() * 150_000) * 7_919L; // 2/3 of the keys fit
+        }
+        for (long key : workload) { // Warm up
+            if (ids.get(key) == null) {
+                ids.put(key, value);
+            }
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long hits = 0;
+        for (int round = 0; round < 10; round++) {
+            for (long key : workload) {
+                if (ids.get(key) != null) {
+                    hits++;
+                } else {
+                    ids.put(key, value);
+                }
+            }
+        }
+        long operations = 10L * workload.length;
+        System.out.printf("%d operations, hit rate %.1f%%, %.3f bytes allocated per operation%n",
+                operations, hits * 100.0 / operations, (double) (allocatedBytes() - allocatedBefore) / operations);
+        // key + value reference + two links + two table slots (compressed oops)
+        System.out.println("~" + (Long.BYTES + 3 * Integer.BYTES + ids.table.length * Integer.BYTES / ids.capacity)
+                + " bytes per entry for " + ids.size() + " entries");
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+        }
+        return 0; // Allocation tracking is HotSpot specific
+    }
+}
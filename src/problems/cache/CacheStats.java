@@ -0,0 +1,77 @@
+package problems.cache;
+
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadNanos;
+    private final long evictionCount;
+    private final long evictionWeight;
+
+    CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadNanos,
+               long evictionCount, long evictionWeight) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadNanos = totalLoadNanos;
+        this.evictionCount = evictionCount;
+        this.evictionWeight = evictionWeight;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1 : (double) hitCount / requests;
+    }
+
+    public double getMissRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 0 : (double) missCount / requests;
+    }
+
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    public long getTotalLoadNanos() {
+        return totalLoadNanos;
+    }
+
+    // Average time a load kept a caller waiting
+    public double getAverageLoadPenaltyNanos() {
+        long loads = loadSuccessCount + loadFailureCount;
+        return loads == 0 ? 0 : (double) totalLoadNanos / loads;
+    }
+
+    // Entries removed for size or expiry
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getEvictionWeight() {
+        return evictionWeight;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" + "hits=" + hitCount + ", misses=" + missCount
+                + ", hitRate=" + String.format("%.3f", getHitRate())
+                + ", loadSuccesses=" + loadSuccessCount + ", loadFailures=" + loadFailureCount
+                + ", avgLoadPenalty=" + (long) getAverageLoadPenaltyNanos() + "ns"
+                + ", evictions=" + evictionCount + ", evictionWeight=" + evictionWeight + "}";
+    }
+}
@@ -0,0 +1,326 @@
+package problems.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+// Second-level cache tier on local disk. Values are appended to memory-mapped segment files, so writing is a memory
+// copy and reading one back costs at most a page fault, while the OS page cache decides what stays in RAM.
+// The index (key -> segment, offset, length) is kept in memory, so a lookup never searches the files.
+//
+// Segments are append-only: removing or overwriting an entry only makes its old record dead. A background thread
+// compacts the segment with the most dead space once less than half of it is live, copying its live records to the
+// active segment and deleting the file. Compaction only uses free space and never evicts: if the records don't fit
+// without dropping a segment, it waits. When the tier is full, the oldest segment is dropped with all its entries.
+// Each segment links the index entries of its live records, so dropping or compacting one only visits its own.
+//
+// Record layout: int value length, long write time, long TTL, value bytes.
+// The index is not persisted: the tier is a cache, and its files are deleted on close.
+public class DiskSpillStore<K, V> implements AutoCloseable {
+
+    private static final int RECORD_HEADER = Integer.BYTES + 2 * Long.BYTES;
+    private static final double COMPACTION_THRESHOLD = 0.5;
+    private static final long COMPACTION_INTERVAL_MILLIS = 1000;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final Serializer<V> serializer;
+    private final BiConsumer<K, StoredEntry<V>> onEviction; // Null if nobody needs dropped entries back
+    private final Map<K, Location<K>> index = new HashMap<>();
+    private final ArrayDeque<Segment<K>> segments = new ArrayDeque<>(); // Oldest first, the last one is active
+    private final Thread compactor;
+    private int nextSegmentId;
+    private volatile boolean closed;
+
+    public DiskSpillStore(Path directory, long maximumBytes, int segmentBytes, Serializer<V> serializer,
+                          BiConsumer<K, StoredEntry<V>> onEviction) {
+        if (segmentBytes <= RECORD_HEADER || maximumBytes < 2L * segmentBytes) {
+            throw new IllegalArgumentException("The disk tier needs room for at least two segments");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maximumBytes / segmentBytes);
+        this.serializer = serializer;
+        this.onEviction = onEviction;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        this.compactor = new Thread(this::compactContinuously, "cache-compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+
+    // Returns false if the value is larger than a segment
+    public synchronized boolean put(K key, V value, long writtenAt, long ttlNanos) {
+        byte[] bytes = serializer.serialize(value);
+        int length = RECORD_HEADER + bytes.length;
+        if (length > segmentBytes) {
+            return false;
+        }
+        remove(key);
+        Segment<K> segment = segmentWithRoom(length);
+        int offset = segment.writePosition;
+        segment.buffer.putInt(offset, bytes.length);
+        segment.buffer.putLong(offset + Integer.BYTES, writtenAt);
+        segment.buffer.putLong(offset + Integer.BYTES + Long.BYTES, ttlNanos);
+        ByteBuffer target = segment.buffer.duplicate();
+        target.position(offset + RECORD_HEADER);
+        target.put(bytes);
+        append(key, segment, length);
+        return true;
+    }
+
+    // Removes the entry and returns it, or null if the key is not stored here
+    public synchronized StoredEntry<V> take(K key) {
+        Location<K> location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        StoredEntry<V> entry = read(location);
+        remove(key);
+        return entry;
+    }
+
+    public synchronized boolean remove(K key) {
+        Location<K> location = index.remove(key);
+        if (location == null) {
+            return false;
+        }
+        location.segment.unlink(location);
+        return true;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized long diskBytes() {
+        return (long) segments.size() * segmentBytes;
+    }
+
+    // Compacts the sparsest sealed segment if less than half of it is live and its records fit in free space.
+    // Returns whether it did.
+    public boolean compact() {
+        List<K> live = new ArrayList<>();
+        Segment<K> victim;
+        synchronized (this) {
+            victim = null;
+            for (Segment<K> segment : segments) {
+                if (segment != segments.peekLast() && segment.liveBytes < segmentBytes * COMPACTION_THRESHOLD
+                        && (victim == null || segment.liveBytes < victim.liveBytes)) {
+                    victim = segment;
+                }
+            }
+            if (victim == null || victim.liveBytes > freeBytes()) {
+                return false;
+            }
+            for (Location<K> location = victim.head.next; location != victim.head; location = location.next) {
+                live.add(location.key);
+            }
+        }
+
+        // Copies one record at a time, so cache operations only ever wait for a single copy
+        for (K key : live) {
+            synchronized (this) {
+                Location<K> location = index.get(key);
+                if (location == null || location.segment != victim) {
+                    continue; // Removed or rewritten meanwhile
+                }
+                if (!segments.contains(victim)) {
+                    return true; // Dropped as the oldest segment by a put meanwhile
+                }
+                Segment<K> target = segmentWithFreeRoom(location.length);
+                if (target == null) {
+                    return false; // Puts took the free space meanwhile, try again later
+                }
+                ByteBuffer source = victim.buffer.duplicate();
+                source.limit(location.offset + location.length).position(location.offset);
+                ByteBuffer destination = target.buffer.duplicate();
+                destination.position(target.writePosition);
+                destination.put(source);
+                victim.unlink(location);
+                append(key, target, location.length);
+            }
+        }
+
+        synchronized (this) {
+            if (segments.remove(victim)) {
+                delete(victim);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        compactor.interrupt();
+        try {
+            compactor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            while (!segments.isEmpty()) {
+                delete(segments.pollFirst());
+            }
+            index.clear();
+        }
+    }
+
+    private void compactContinuously() {
+        while (!closed) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(COMPACTION_INTERVAL_MILLIS);
+                while (!closed && compact()) {
+                    // Keep going while there is dead space to reclaim
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (UncheckedIOException e) {
+                // Disk trouble, try again later rather than kill the thread
+            }
+        }
+    }
+
+    private void append(K key, Segment<K> segment, int length) {
+        Location<K> location = new Location<>(key, segment, segment.writePosition, length);
+        index.put(key, location);
+        segment.link(location);
+        segment.writePosition += length;
+    }
+
+    private StoredEntry<V> read(Location<K> location) {
+        ByteBuffer buffer = location.segment.buffer;
+        int valueLength = buffer.getInt(location.offset);
+        ByteBuffer source = buffer.duplicate();
+        int start = location.offset + RECORD_HEADER;
+        source.limit(start + valueLength).position(start);
+        return new StoredEntry<>(serializer.deserialize(source.slice()),
+                buffer.getLong(location.offset + Integer.BYTES),
+                buffer.getLong(location.offset + Integer.BYTES + Long.BYTES));
+    }
+
+    // Returns the active segment if the record fits, else opens a new one, dropping the oldest if the tier is full
+    private Segment<K> segmentWithRoom(int length) {
+        Segment<K> segment = segmentWithFreeRoom(length);
+        if (segment != null) {
+            return segment;
+        }
+        dropOldest();
+        return openSegment();
+    }
+
+    // Like segmentWithRoom, but returns null rather than drop a segment
+    private Segment<K> segmentWithFreeRoom(int length) {
+        Segment<K> active = segments.peekLast();
+        if (active != null && active.writePosition + length <= segmentBytes) {
+            return active;
+        }
+        return segments.size() < maxSegments ? openSegment() : null;
+    }
+
+    // Space left in the active segment and in the segments not opened yet
+    private long freeBytes() {
+        Segment<K> active = segments.peekLast();
+        long activeRoom = active == null ? 0 : segmentBytes - active.writePosition;
+        return activeRoom + (long) (maxSegments - segments.size()) * segmentBytes;
+    }
+
+    private Segment<K> openSegment() {
+        Segment<K> segment = new Segment<>(directory.resolve("segment-" + nextSegmentId++ + ".dat"), segmentBytes);
+        segments.addLast(segment);
+        return segment;
+    }
+
+    private void dropOldest() {
+        Segment<K> oldest = segments.pollFirst();
+        for (Location<K> location = oldest.head.next; location != oldest.head; location = location.next) {
+            if (onEviction != null) {
+                onEviction.accept(location.key, read(location));
+            }
+            index.remove(location.key);
+        }
+        delete(oldest);
+    }
+
+    private static void delete(Segment<?> segment) {
+        try {
+            segment.channel.close();
+            Files.deleteIfExists(segment.file); // The mapping itself is released when the buffer is collected
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Where a live record is, linked into its segment's list of live records
+    private static final class Location<K> {
+        private final K key;
+        private final Segment<K> segment;
+        private final int offset;
+        private final int length; // Whole record, header included
+        private Location<K> prev;
+        private Location<K> next;
+
+        private Location(K key, Segment<K> segment, int offset, int length) {
+            this.key = key;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class Segment<K> {
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final Location<K> head = new Location<>(null, null, 0, 0);
+        private int writePosition;
+        private long liveBytes;
+
+        private Segment(Path file, int size) {
+            head.prev = head;
+            head.next = head;
+            try {
+                this.file = file;
+                this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void link(Location<K> location) {
+            location.prev = head.prev;
+            location.next = head;
+            head.prev.next = location;
+            head.prev = location;
+            liveBytes += location.length;
+        }
+
+        private void unlink(Location<K> location) {
+            location.prev.next = location.next;
+            location.next.prev = location.prev;
+            location.prev = null;
+            location.next = null;
+            liveBytes -= location.length;
+        }
+    }
+}
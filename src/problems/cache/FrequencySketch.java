@@ -0,0 +1,78 @@
+package problems.cache;
+
+// Approximate access frequency of every key seen recently, in a fixed 8 bytes per cache entry whatever the number of
+// distinct keys. It is a count-min sketch with 4-bit counters: each key increments one counter in each of four rows
+// and its frequency is the smallest of them, so collisions can only over-estimate it.
+//
+// Counters saturate at 15, and once the sketch has recorded 10 accesses per cache entry every counter is halved.
+// That aging lets keys that were popular yesterday fade out instead of holding on to the cache forever.
+public class FrequencySketch<E> {
+
+    private static final long RESET_MASK = 0x7777777777777777L; // Clears the bit shifted in from the next counter
+    private static final int SAMPLE_FACTOR = 10;
+    private static final long[] ROW_SEEDS = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+    };
+
+    private final long[] table; // Each long holds 16 counters: 4 rows of 4
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    public FrequencySketch(long maximumSize) {
+        int length = (int) Math.min(1 << 30, Math.max(2, Long.highestOneBit(Math.max(1, maximumSize) - 1) << 1));
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = (int) Math.min(Integer.MAX_VALUE, (long) length * SAMPLE_FACTOR);
+    }
+
+    public int frequency(E element) {
+        int hash = spread(element.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for (int row = 0; row < 4; row++) {
+            long word = table[indexOf(hash, row)];
+            frequency = Math.min(frequency, (int) (word >>> offsetOf(hash, row)) & 0xF);
+        }
+        return frequency;
+    }
+
+    public void increment(E element) {
+        int hash = spread(element.hashCode());
+        boolean added = false;
+        for (int row = 0; row < 4; row++) {
+            int index = indexOf(hash, row);
+            int offset = offsetOf(hash, row);
+            if (((table[index] >>> offset) & 0xF) != 0xF) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    // Halves every counter, so old popularity decays
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + ROW_SEEDS[row]) * ROW_SEEDS[row];
+        return (int) (h ^ (h >>> 32)) & tableMask;
+    }
+
+    // Row r uses counters 4r..4r+3 of its word, picked by two bits of the hash
+    private static int offsetOf(int hash, int row) {
+        return ((row << 2) + ((hash >>> (row << 3)) & 3)) << 2;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45D9F3B;
+        hash = ((hash >>> 16) ^ hash) * 0x45D9F3B;
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -0,0 +1,313 @@
+package problems.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+// Keeps serialized values in direct memory, where they cost the garbage collector nothing, with a slab allocator in
+// the style of memcached:
+//  - memory is taken from the OS in 1 MB pages, up to the configured maximum, and never given back
+//  - each page is cut into equal chunks of one size class; classes grow by 25%, so a value wastes at most 20%
+//  - freed chunks go on their class's free list and are reused before a new page is taken
+//  - when a class has no free chunk and no page is left, the least recently stored data makes room: the class's own
+//    oldest entry, or a whole page of another class if that page was last stored into earlier still. The page is
+//    emptied and handed over, so pages follow the value sizes as the workload shifts instead of staying with the
+//    class that first asked for them, and a class that never had a page can still get one.
+// Only the index (key -> page, offset, length) stays on the heap.
+//
+// Every chunk starts with two longs of metadata the owner stores along with the value (the write time and TTL).
+// A value can't span pages, so values over MAX_VALUE_BYTES are never stored here.
+// Not thread-safe: the owner calls it under its own lock.
+public class OffHeapStore<K, V> {
+
+    private static final int PAGE_SIZE = 1 << 20;
+    private static final int MIN_CHUNK = 64;
+    private static final int HEADER_BYTES = 2 * Long.BYTES;
+
+    public static final int MAX_VALUE_BYTES = PAGE_SIZE - HEADER_BYTES;
+
+    private final Serializer<V> serializer;
+    private final BiConsumer<K, StoredEntry<V>> onEviction; // Null if nobody needs evicted entries back
+    private final int maxPages;
+    private final List<Page<K>> pages = new ArrayList<>();
+    private final Page<K> pageOrder = new Page<>(-1); // Sentinel of the pages by last store, least recent first
+    private final int[] chunkSizes;
+    private final SizeClass<K>[] classes;
+    private final Map<K, Slot<K>> index = new HashMap<>();
+    private long storedBytes;
+    private long stores; // Orders stores across all classes
+
+    @SuppressWarnings("unchecked")
+    public OffHeapStore(long maximumBytes, Serializer<V> serializer, BiConsumer<K, StoredEntry<V>> onEviction) {
+        if (maximumBytes < PAGE_SIZE) {
+            throw new IllegalArgumentException("The off-heap tier needs at least " + PAGE_SIZE + " bytes");
+        }
+        this.serializer = serializer;
+        this.onEviction = onEviction;
+        this.maxPages = (int) Math.min(Integer.MAX_VALUE, maximumBytes / PAGE_SIZE);
+        pageOrder.prev = pageOrder;
+        pageOrder.next = pageOrder;
+
+        List<Integer> sizes = new ArrayList<>();
+        for (int size = MIN_CHUNK; size < PAGE_SIZE; size = (size + size / 4 + 7) & ~7) {
+            sizes.add(size);
+        }
+        sizes.add(PAGE_SIZE);
+        this.chunkSizes = sizes.stream().mapToInt(Integer::intValue).toArray();
+        this.classes = (SizeClass<K>[]) new SizeClass<?>[chunkSizes.length];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new SizeClass<>(chunkSizes[i]);
+        }
+    }
+
+    // Returns false if the value could not be stored: larger than MAX_VALUE_BYTES, or there was no room for it
+    public boolean put(K key, V value, long writtenAt, long ttlNanos) {
+        remove(key);
+        byte[] bytes = serializer.serialize(value);
+        if (bytes.length > MAX_VALUE_BYTES) {
+            return false;
+        }
+        int sizeClass = classOf(HEADER_BYTES + bytes.length);
+        long address = allocate(sizeClass);
+        if (address < 0) {
+            return false;
+        }
+
+        Slot<K> slot = new Slot<>(key, (int) (address >>> 32), (int) address, bytes.length, sizeClass, ++stores);
+        Page<K> page = pages.get(slot.page);
+        page.buffer.putLong(slot.offset, writtenAt);
+        page.buffer.putLong(slot.offset + Long.BYTES, ttlNanos);
+        ByteBuffer target = page.buffer.duplicate();
+        target.position(slot.offset + HEADER_BYTES);
+        target.put(bytes);
+
+        index.put(key, slot);
+        classes[sizeClass].addLast(slot);
+        page.slots[slot.offset / chunkSizes[sizeClass]] = slot;
+        page.lastStored = slot.storedAt;
+        page.unlink();
+        page.linkBefore(pageOrder); // Most recently stored into
+        storedBytes += bytes.length;
+        return true;
+    }
+
+    // Removes the entry and returns it, or null if the key is not stored here
+    public StoredEntry<V> take(K key) {
+        Slot<K> slot = index.get(key);
+        if (slot == null) {
+            return null;
+        }
+        StoredEntry<V> entry = read(slot);
+        remove(key);
+        return entry;
+    }
+
+    public boolean remove(K key) {
+        Slot<K> slot = index.remove(key);
+        if (slot == null) {
+            return false;
+        }
+        free(slot);
+        return true;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    // Bytes of serialized values currently stored, without chunk rounding
+    public long storedBytes() {
+        return storedBytes;
+    }
+
+    public long reservedBytes() {
+        return (long) pages.size() * PAGE_SIZE;
+    }
+
+    private StoredEntry<V> read(Slot<K> slot) {
+        ByteBuffer page = pages.get(slot.page).buffer;
+        ByteBuffer source = page.duplicate();
+        source.limit(slot.offset + HEADER_BYTES + slot.length).position(slot.offset + HEADER_BYTES);
+        return new StoredEntry<>(serializer.deserialize(source.slice()),
+                page.getLong(slot.offset), page.getLong(slot.offset + Long.BYTES));
+    }
+
+    private int classOf(int size) {
+        int low = 0;
+        int high = chunkSizes.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (chunkSizes[mid] < size) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Returns page << 32 | offset, or -1 if there is nothing the class could take memory from
+    private long allocate(int sizeClass) {
+        SizeClass<K> chunks = classes[sizeClass];
+        if (chunks.freeCount > 0) {
+            return chunks.free[--chunks.freeCount];
+        }
+        if (chunks.page < 0 || chunks.nextOffset + chunks.chunkSize > PAGE_SIZE) {
+            Page<K> page;
+            if (pages.size() < maxPages) {
+                page = new Page<>(pages.size());
+                pages.add(page);
+                page.linkBefore(pageOrder);
+            } else {
+                Page<K> oldestPage = pageOrder.next;
+                Slot<K> oldestOwn = chunks.head.next != chunks.head ? chunks.head.next : null;
+                if (oldestPage.sizeClass != sizeClass && oldestPage != pageOrder
+                        && (oldestOwn == null || oldestPage.lastStored < oldestOwn.storedAt)) {
+                    page = oldestPage;
+                    release(page);
+                } else if (oldestOwn != null) {
+                    evict(oldestOwn);
+                    return chunks.free[--chunks.freeCount];
+                } else {
+                    return -1;
+                }
+            }
+            assign(page, sizeClass);
+        }
+        long address = (long) chunks.page << 32 | chunks.nextOffset;
+        chunks.nextOffset += chunks.chunkSize;
+        return address;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void assign(Page<K> page, int sizeClass) {
+        SizeClass<K> chunks = classes[sizeClass];
+        page.sizeClass = sizeClass;
+        page.slots = (Slot<K>[]) new Slot<?>[PAGE_SIZE / chunks.chunkSize];
+        chunks.page = page.index;
+        chunks.nextOffset = 0;
+    }
+
+    // Evicts every entry of the page and takes its chunks away from its class, so it can be given to another one
+    private void release(Page<K> page) {
+        SizeClass<K> owner = classes[page.sizeClass];
+        for (Slot<K> slot : page.slots) {
+            if (slot != null) {
+                evict(slot);
+            }
+        }
+        int kept = 0;
+        for (int i = 0; i < owner.freeCount; i++) {
+            if ((int) (owner.free[i] >>> 32) != page.index) {
+                owner.free[kept++] = owner.free[i];
+            }
+        }
+        owner.freeCount = kept;
+        if (owner.page == page.index) {
+            owner.page = -1;
+        }
+    }
+
+    private void evict(Slot<K> slot) {
+        if (onEviction != null) {
+            onEviction.accept(slot.key, read(slot));
+        }
+        index.remove(slot.key);
+        free(slot);
+    }
+
+    private void free(Slot<K> slot) {
+        SizeClass<K> chunks = classes[slot.sizeClass];
+        chunks.remove(slot);
+        pages.get(slot.page).slots[slot.offset / chunks.chunkSize] = null;
+        if (chunks.freeCount == chunks.free.length) {
+            chunks.free = Arrays.copyOf(chunks.free, chunks.freeCount * 2);
+        }
+        chunks.free[chunks.freeCount++] = (long) slot.page << 32 | slot.offset;
+        storedBytes -= slot.length;
+    }
+
+    // Where an entry lives, linked into its class's list in the order entries were stored
+    private static final class Slot<K> {
+        private final K key;
+        private final int page;
+        private final int offset;
+        private final int length;
+        private final int sizeClass;
+        private final long storedAt;
+        private Slot<K> prev;
+        private Slot<K> next;
+
+        private Slot(K key, int page, int offset, int length, int sizeClass, long storedAt) {
+            this.key = key;
+            this.page = page;
+            this.offset = offset;
+            this.length = length;
+            this.sizeClass = sizeClass;
+            this.storedAt = storedAt;
+        }
+    }
+
+    // A 1 MB page, linked into the store-wide list of pages in the order they were last stored into
+    private static final class Page<K> {
+        private final int index;
+        private final ByteBuffer buffer;
+        private int sizeClass = -1;
+        private Slot<K>[] slots; // By chunk number, null where the chunk is free or not carved yet
+        private long lastStored;
+        private Page<K> prev;
+        private Page<K> next;
+
+        private Page(int index) {
+            this.index = index;
+            this.buffer = index < 0 ? null : ByteBuffer.allocateDirect(PAGE_SIZE);
+        }
+
+        private void linkBefore(Page<K> sentinel) {
+            prev = sentinel.prev;
+            next = sentinel;
+            sentinel.prev.next = this;
+            sentinel.prev = this;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
+        }
+    }
+
+    private static final class SizeClass<K> {
+        private final int chunkSize;
+        private int page = -1; // Page being carved into chunks
+        private int nextOffset;
+        private long[] free = new long[16];
+        private int freeCount;
+        private final Slot<K> head = new Slot<>(null, 0, 0, 0, 0, 0);
+
+        private SizeClass(int chunkSize) {
+            this.chunkSize = chunkSize;
+            head.prev = head;
+            head.next = head;
+        }
+
+        private void addLast(Slot<K> slot) {
+            slot.prev = head.prev;
+            slot.next = head;
+            head.prev.next = slot;
+            head.prev = slot;
+        }
+
+        private void remove(Slot<K> slot) {
+            slot.prev.next = slot.next;
+            slot.next.prev = slot.prev;
+            slot.prev = null;
+            slot.next = null;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package problems.cache;
+
+public enum RemovalCause {
+    EXPLICIT, // invalidate()
+    REPLACED, // put() over an existing value
+    EXPIRED,  // Its time to live ran out
+    SIZE      // Evicted to stay within capacity or maximum weight
+}
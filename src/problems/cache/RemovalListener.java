@@ -0,0 +1,9 @@
+package problems.cache;
+
+// Told about every entry that leaves a cache, e.g. to close the resources an evicted value holds.
+// Caches call it asynchronously on their executor, so it does not slow down cache operations.
+@FunctionalInterface
+public interface RemovalListener<K, V> {
+
+    void onRemoval(K key, V value, RemovalCause cause);
+}
@@ -0,0 +1,28 @@
+package problems.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Turns values into bytes and back, for cache tiers that keep values outside the Java heap
+public interface Serializer<V> {
+
+    byte[] serialize(V value);
+
+    // The buffer holds exactly the serialized value (position to limit) and is only valid during the call,
+    // so copy out whatever the value keeps
+    V deserialize(ByteBuffer bytes);
+
+    static Serializer<String> strings() {
+        return new Serializer<String>() {
+            @Override
+            public byte[] serialize(String value) {
+                return value.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String deserialize(ByteBuffer bytes) {
+                return StandardCharsets.UTF_8.decode(bytes).toString();
+            }
+        };
+    }
+}
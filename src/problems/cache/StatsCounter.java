@@ -0,0 +1,45 @@
+package problems.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Cache statistics recorded into LongAdders, which stripe their count across cells so concurrent updates from many
+// threads don't contend on one memory location
+public final class StatsCounter {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder evictionWeight = new LongAdder();
+
+    public void recordHits(int count) {
+        hits.add(count);
+    }
+
+    public void recordMisses(int count) {
+        misses.add(count);
+    }
+
+    public void recordLoadSuccess(long loadNanos) {
+        loadSuccesses.increment();
+        totalLoadNanos.add(loadNanos);
+    }
+
+    // The loader threw or returned null
+    public void recordLoadFailure(long loadNanos) {
+        loadFailures.increment();
+        totalLoadNanos.add(loadNanos);
+    }
+
+    public void recordEviction(int weight) {
+        evictions.increment();
+        evictionWeight.add(weight);
+    }
+
+    public CacheStats snapshot() {
+        return new CacheStats(hits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(), totalLoadNanos.sum(),
+                evictions.sum(), evictionWeight.sum());
+    }
+}
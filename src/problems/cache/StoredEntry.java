@@ -0,0 +1,31 @@
+package problems.cache;
+
+// A value read back from a cache tier outside the heap, with the write time and TTL it was stored with
+public final class StoredEntry<V> {
+    private final V value;
+    private final long writtenAt;
+    private final long ttlNanos;
+
+    StoredEntry(V value, long writtenAt, long ttlNanos) {
+        this.value = value;
+        this.writtenAt = writtenAt;
+        this.ttlNanos = ttlNanos;
+    }
+
+    public V getValue() {
+        return value;
+    }
+
+    public long getWrittenAt() {
+        return writtenAt;
+    }
+
+    public long getTtlNanos() {
+        return ttlNanos;
+    }
+
+    // 0 means no write TTL
+    public boolean isExpired(long nowNanos) {
+        return ttlNanos > 0 && writtenAt + ttlNanos - nowNanos <= 0;
+    }
+}
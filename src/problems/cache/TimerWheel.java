@@ -0,0 +1,137 @@
+package problems.cache;
+
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel: schedules, reschedules and cancels a timer in O(1), and expires timers without looking
+// at the ones that are not due. Each level is a ring of buckets of doubly linked timers. A timer goes to the finest
+// level whose range covers its delay; when the clock passes a bucket, its timers are either expired or, if they were
+// parked on a coarse level, moved down to a finer one. Every timer cascades at most once per level, which keeps
+// expiry amortized O(1).
+//
+//   level  bucket width   buckets   range
+//     0       ~1.07 s        64     ~1.14 min
+//     1       ~1.14 min      64     ~1.22 h
+//     2       ~1.22 h        32     ~1.63 d
+//     3       ~1.63 d         4     ~6.5 d
+//     4       ~6.5 d          1     longer delays, looked at again every ~6.5 d
+//
+// Timers fire up to one bucket late, so callers that need exact expiry also check the deadline on access.
+// Not thread-safe: the owner calls it under its own lock.
+public class TimerWheel<T extends TimerWheel.Timer> {
+
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    private static final long[] SPANS = {
+            1L << 30, // ~1.07 s
+            1L << 36, // ~1.14 min
+            1L << 42, // ~1.22 h
+            1L << 47, // ~1.63 d
+            1L << 49  // ~6.5 d
+    };
+    private static final int[] SHIFTS = {30, 36, 42, 47, 49};
+
+    private final Timer[][] wheel = new Timer[BUCKETS.length][];
+    private final long origin; // Times are kept relative to it, so ticker values that are negative work too
+    private long nanos;
+
+    public TimerWheel(long nowNanos) {
+        this.origin = nowNanos;
+        for (int level = 0; level < BUCKETS.length; level++) {
+            wheel[level] = new Timer[BUCKETS[level]];
+            for (int bucket = 0; bucket < BUCKETS[level]; bucket++) {
+                Timer sentinel = new Sentinel();
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                wheel[level][bucket] = sentinel;
+            }
+        }
+    }
+
+    // Schedules the timer to fire at the given ticker time, moving it if it was already scheduled
+    public void schedule(T timer, long expiresAtNanos) {
+        cancel(timer);
+        ((Timer) timer).expiresAt = expiresAtNanos;
+        link(timer);
+    }
+
+    public void cancel(T scheduled) {
+        Timer timer = scheduled; // Private fields are not reachable through the type variable
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+            timer.next.prev = timer.prev;
+            timer.prev = null;
+            timer.next = null;
+        }
+    }
+
+    // Moves the clock forward and hands every timer that is now due to the callback, already unlinked
+    @SuppressWarnings("unchecked")
+    public void advance(long nowNanos, Consumer<T> onExpired) {
+        long previous = nanos;
+        long current = nowNanos - origin;
+        if (current - previous <= 0) {
+            return;
+        }
+        nanos = current;
+
+        for (int level = 0; level < SHIFTS.length; level++) {
+            long previousTicks = previous >>> SHIFTS[level];
+            long currentTicks = current >>> SHIFTS[level];
+            if (currentTicks == previousTicks) {
+                break; // Coarser levels have not turned either
+            }
+            Timer[] buckets = wheel[level];
+            int mask = buckets.length - 1;
+            long steps = Math.min(currentTicks - previousTicks + 1, buckets.length);
+            for (long tick = previousTicks; tick < previousTicks + steps; tick++) {
+                Timer sentinel = buckets[(int) (tick & mask)];
+                Timer timer = sentinel.next;
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                while (timer != sentinel) {
+                    Timer next = timer.next;
+                    timer.prev = null;
+                    timer.next = null;
+                    if (timer.expiresAt - origin - nanos <= 0) {
+                        onExpired.accept((T) timer);
+                    } else {
+                        link(timer); // Cascades down to a finer level
+                    }
+                    timer = next;
+                }
+            }
+        }
+    }
+
+    private void link(Timer timer) {
+        long expiresAt = timer.expiresAt - origin;
+        long delay = expiresAt - nanos;
+        int level = 0;
+        while (level < SHIFTS.length - 1 && delay >= SPANS[level + 1]) {
+            level++;
+        }
+        Timer[] buckets = wheel[level];
+        Timer sentinel = buckets[(int) ((Math.max(expiresAt, nanos) >>> SHIFTS[level]) & (buckets.length - 1))];
+        timer.prev = sentinel.prev;
+        timer.next = sentinel;
+        sentinel.prev.next = timer;
+        sentinel.prev = timer;
+    }
+
+    // Something that can be scheduled on the wheel. The links are intrusive, so scheduling never allocates.
+    public abstract static class Timer {
+        private long expiresAt;
+        private Timer prev;
+        private Timer next;
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public boolean isScheduled() {
+            return prev != null;
+        }
+    }
+
+    private static final class Sentinel extends Timer {
+    }
+}
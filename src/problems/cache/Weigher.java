@@ -0,0 +1,13 @@
+package problems.cache;
+
+// Tells a cache how much of its budget an entry uses, e.g. the size of the value in bytes. The weight is taken once
+// when the entry is stored, so it must not depend on anything that changes later.
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+    int weigh(K key, V value);
+
+    static <K, V> Weigher<K, V> singleton() {
+        return (key, value) -> 1;
+    }
+}
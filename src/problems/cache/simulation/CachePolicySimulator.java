@@ -0,0 +1,223 @@
+package problems.cache.simulation;
+
+import problems.ConcurrentLRUCache;
+import problems.LFUCache;
+import problems.LRUCache;
+import problems.LongKeyLRUCache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+// Replays key traces against several eviction policies of the same capacity and reports the hit ratio of each.
+// A policy sees every key of the trace as a read that fills the cache on a miss, like a read-through cache would.
+//
+// Synthetic traces:
+//  - zipf: popularity falling off as 1 / rank^s, the usual shape of production traffic
+//  - scan: zipf traffic with a one-off sweep over cold keys every so often (batch jobs, reports)
+//  - loop: a cyclic pass over slightly more keys than fit, LRU's worst case
+// Recorded trace files hold one numeric key per line; blank lines and lines starting with '#' are skipped.
+//
+// Usage: java problems.cache.simulation.CachePolicySimulator [capacity] [traceFile]
+public class CachePolicySimulator {
+
+    // Something that can cache keys: returns whether the key was a hit, and caches it if it was not.
+    // Keys are passed boxed, and replay() boxes a trace once up front, so an access doesn't allocate a Long.
+    public interface Policy {
+        boolean access(Long key);
+    }
+
+    private final int capacity;
+    private final Map<String, IntFunction<Policy>> policies = new LinkedHashMap<>(defaultPolicies());
+
+    public CachePolicySimulator(int capacity) {
+        this.capacity = capacity;
+    }
+
+    // Every cache in the repo, by name; each factory gets the capacity
+    public static Map<String, IntFunction<Policy>> defaultPolicies() {
+        Map<String, IntFunction<Policy>> policies = new LinkedHashMap<>();
+        policies.put("LRU", size -> {
+            LRUCache<Long, Boolean> cache = new LRUCache<>(size);
+            return readThrough(cache::get, cache::put);
+        });
+        policies.put("W-TinyLFU", size -> {
+            LRUCache<Long, Boolean> cache = new LRUCache.LRUCacheBuilder<Long, Boolean>()
+                    .setCapacity(size).setTinyLfuAdmission(true).build();
+            return readThrough(cache::get, cache::put);
+        });
+        policies.put("LFU", size -> {
+            LFUCache<Long, Boolean> cache = new LFUCache<>(size);
+            return readThrough(cache::get, cache::put);
+        });
+        policies.put("ConcurrentLRU", size -> {
+            ConcurrentLRUCache<Long, Boolean> cache = new ConcurrentLRUCache<>(size);
+            return readThrough(cache::get, cache::put);
+        });
+        policies.put("LongKeyLRU", size -> {
+            LongKeyLRUCache<Boolean> cache = new LongKeyLRUCache<>(size);
+            return readThrough(cache::get, cache::put);
+        });
+        return policies;
+    }
+
+    // Uses a cache the way a read-through caller would: a get, and a put on a miss
+    public static Policy readThrough(Function<Long, ?> get, BiConsumer<Long, Boolean> put) {
+        return key -> {
+            if (get.apply(key) != null) {
+                return true;
+            }
+            put.accept(key, Boolean.TRUE);
+            return false;
+        };
+    }
+
+    // Adds or replaces a policy; the factory gets the capacity
+    public void addPolicy(String name, IntFunction<Policy> factory) {
+        policies.put(name, factory);
+    }
+
+    public List<Report> replay(long[] trace) {
+        Long[] keys = new Long[trace.length];
+        for (int i = 0; i < trace.length; i++) {
+            keys[i] = trace[i];
+        }
+        List<Report> reports = new ArrayList<>();
+        for (Map.Entry<String, IntFunction<Policy>> policy : policies.entrySet()) {
+            Policy cache = policy.getValue().apply(capacity);
+            long hits = 0;
+            long start = System.nanoTime();
+            for (Long key : keys) {
+                if (cache.access(key)) {
+                    hits++;
+                }
+            }
+            reports.add(new Report(policy.getKey(), trace.length, hits, System.nanoTime() - start));
+        }
+        return reports;
+    }
+
+    public static long[] zipf(int events, int keys, double exponent, long seed) {
+        // Cumulative popularity of each rank, searched with a uniform draw
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for (int rank = 0; rank < keys; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        Random random = new Random(seed);
+        long[] trace = new long[events];
+        for (int i = 0; i < events; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            trace[i] = rank >= 0 ? rank : -rank - 1;
+        }
+        return trace;
+    }
+
+    // Zipf traffic with a sweep over scanLength never-repeated keys every scanEvery events
+    public static long[] scan(int events, int keys, double exponent, int scanEvery, int scanLength, long seed) {
+        long[] hot = zipf(events, keys, exponent, seed);
+        long[] trace = new long[events];
+        long coldKey = keys;
+        int hotIndex = 0;
+        for (int i = 0; i < events; i++) {
+            boolean scanning = i % scanEvery < scanLength;
+            trace[i] = scanning ? coldKey++ : hot[hotIndex++];
+        }
+        return trace;
+    }
+
+    public static long[] loop(int events, int loopLength) {
+        long[] trace = new long[events];
+        for (int i = 0; i < events; i++) {
+            trace[i] = i % loopLength;
+        }
+        return trace;
+    }
+
+    public static long[] loadTrace(Path file) throws IOException {
+        long[] trace = new long[1024];
+        int size = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (size == trace.length) {
+                    trace = Arrays.copyOf(trace, size * 2);
+                }
+                trace[size++] = Long.parseLong(line);
+            }
+        }
+        return Arrays.copyOf(trace, size);
+    }
+
+    public static final class Report {
+        private final String policy;
+        private final long accesses;
+        private final long hits;
+        private final double accessesPerSecond;
+
+        private Report(String policy, long accesses, long hits, long elapsedNanos) {
+            this.policy = policy;
+            this.accesses = accesses;
+            this.hits = hits;
+            this.accessesPerSecond = accesses * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        public String getPolicy() {
+            return policy;
+        }
+
+        public long getAccesses() {
+            return accesses;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public double getHitRatio() {
+            return accesses == 0 ? 0 : (double) hits / accesses;
+        }
+
+        public double getAccessesPerSecond() {
+            return accessesPerSecond;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int capacity = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        Map<String, long[]> traces = new LinkedHashMap<>();
+        if (args.length > 1) {
+            traces.put(Paths.get(args[1]).getFileName().toString(), loadTrace(Paths.get(args[1])));
+        } else {
+            traces.put("zipf(0.9)", zipf(1_000_000, capacity * 100, 0.9, 42));
+            traces.put("zipf(0.9)+scan", scan(1_000_000, capacity * 100, 0.9, 100_000, capacity * 5, 42));
+            traces.put("loop", loop(1_000_000, capacity + capacity / 10));
+        }
+
+        CachePolicySimulator simulator = new CachePolicySimulator(capacity);
+        System.out.printf("%-16s %-14s %10s %14s%n", "trace", "policy", "hit ratio", "accesses/s");
+        for (Map.Entry<String, long[]> trace : traces.entrySet()) {
+            for (Report report : simulator.replay(trace.getValue())) {
+                System.out.printf("%-16s %-14s %9.2f%% %14.0f%n", trace.getKey(), report.getPolicy(),
+                        report.getHitRatio() * 100, report.getAccessesPerSecond());
+            }
+        }
+    }
+}
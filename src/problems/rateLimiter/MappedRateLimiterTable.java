@@ -0,0 +1,195 @@
+package problems.rateLimiter;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+// Token buckets for many long keys, kept in a memory-mapped file instead of one TokenBucket object per key.
+// Each key takes one 16-byte slot: the key itself and the instant the bucket is empty (the same single-value
+// state TokenBucket keeps in its AtomicLong), both updated with VarHandle CAS directly in the mapped memory.
+// Time is stored as wall-clock epoch nanos, so a restarted process picks up exactly where the previous one stopped
+// and a deploy does not hand every client a fresh burst.
+//
+// The table is open addressed with linear probing and does not grow: size it for the expected number of keys.
+// Key 0 marks an empty slot and cannot be used.
+public class MappedRateLimiterTable implements AutoCloseable {
+
+    private static final long MAGIC = 0x524C5441424C4531L; // "RLTABLE1"
+    private static final int HEADER_BYTES = 64; // Magic, then the capacity and refill rate the table was created for
+    private static final int CAPACITY_OFFSET = Long.BYTES;
+    private static final int REFILL_RATE_OFFSET = 2 * Long.BYTES;
+    private static final int SLOT_BYTES = 16;
+    private static final int MAX_PROBES = 128;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer table;
+    private final int slots;
+    private final int capacity;
+    private final long nanosPerToken;
+    private final long burstNanos;
+
+    // Monotonic clock anchored to wall-clock time once per process
+    private final long anchorEpochNanos;
+    private final long anchorNanoTime;
+
+    public MappedRateLimiterTable(Path file, int maxKeys, int capacity, int refillRate) throws IOException {
+        if (maxKeys <= 0 || capacity <= 0 || refillRate <= 0) {
+            throw new IllegalArgumentException("maxKeys, capacity and refillRate must be positive");
+        }
+        long slotCount = (long) maxKeys + (maxKeys >> 2) + 1; // 80% full at most, ~20 bytes per key
+        long fileSize = HEADER_BYTES + slotCount * SLOT_BYTES;
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many keys for a single mapping: " + maxKeys);
+        }
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean fresh = channel.size() == 0;
+            if (!fresh && channel.size() != fileSize) {
+                throw new IllegalStateException("Existing table " + file
+                        + " was created for a different number of keys");
+            }
+            this.table = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            if (fresh) {
+                LONGS.setVolatile(table, CAPACITY_OFFSET, (long) capacity);
+                LONGS.setVolatile(table, REFILL_RATE_OFFSET, (long) refillRate);
+                LONGS.setVolatile(table, 0, MAGIC);
+            } else if ((long) LONGS.getVolatile(table, 0) != MAGIC) {
+                throw new IllegalStateException(file + " is not a rate limiter table");
+            } else if ((long) LONGS.getVolatile(table, CAPACITY_OFFSET) != capacity
+                    || (long) LONGS.getVolatile(table, REFILL_RATE_OFFSET) != refillRate) {
+                // The stored state is the instant each bucket runs empty, which only means something at the old rate
+                throw new IllegalStateException("Existing table " + file
+                        + " was created for a different capacity or refill rate");
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close(); // Nobody else holds the channel yet
+            throw e;
+        }
+
+        this.slots = (int) slotCount;
+        this.capacity = capacity;
+        this.nanosPerToken = Math.max(1L, 1_000_000_000L / refillRate);
+        this.burstNanos = nanosPerToken * capacity;
+
+        Instant now = Instant.now();
+        this.anchorNanoTime = System.nanoTime();
+        this.anchorEpochNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    public boolean allowRequest(long key) {
+        return tryAcquire(key, 1);
+    }
+
+    public boolean tryAcquire(long key, int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive");
+        }
+        if (permits > capacity) {
+            return false;
+        }
+        int stateOffset = slotOf(key) + Long.BYTES;
+        long cost = permits * nanosPerToken;
+        long currentTime = epochNanos();
+
+        while (true) {
+            long current = (long) LONGS.getVolatile(table, stateOffset);
+
+            // A new slot holds 0, which is far enough in the past to read as a full bucket
+            long refilled = Math.max(current, currentTime - burstNanos);
+            long next = refilled + cost;
+
+            if (next - currentTime > 0) {
+                return false;
+            }
+            if (LONGS.compareAndSet(table, stateOffset, current, next)) {
+                return true;
+            }
+        }
+    }
+
+    public long availablePermits(long key) {
+        long current = (long) LONGS.getVolatile(table, slotOf(key) + Long.BYTES);
+        long currentTime = epochNanos();
+        long refilled = Math.max(current, currentTime - burstNanos);
+        return Math.max(0L, (currentTime - refilled) / nanosPerToken);
+    }
+
+    // Writes dirty pages to disk. Not needed to survive a process restart, only a machine crash.
+    public void flush() {
+        table.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    // Finds the key's slot, claiming an empty one on first use. Returns the slot's byte offset.
+    private int slotOf(long key) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved for empty slots");
+        }
+        int index = (int) (((mix(key) & 0xFFFFFFFFL) * slots) >>> 32); // Maps the hash onto [0, slots)
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int offset = HEADER_BYTES + index * SLOT_BYTES;
+            long stored = (long) LONGS.getVolatile(table, offset);
+            if (stored == key) {
+                return offset;
+            }
+            if (stored == 0 && ((long) LONGS.compareAndExchange(table, offset, 0L, key) == 0L
+                    || (long) LONGS.getVolatile(table, offset) == key)) {
+                return offset; // Claimed it, or another thread just claimed it for the same key
+            }
+            index = index + 1 == slots ? 0 : index + 1;
+        }
+        throw new IllegalStateException("Rate limiter table is full, size it for more keys");
+    }
+
+    private long epochNanos() {
+        return anchorEpochNanos + (System.nanoTime() - anchorNanoTime);
+    }
+
+    private static long mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return key ^ (key >>> 32);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("rate-limits", ".table");
+        Files.delete(file); // Let the table create and size it
+
+        try (MappedRateLimiterTable limits = new MappedRateLimiterTable(file, 1_000_000, 3, 1)) {
+            System.out.println("--- Before the deploy ---");
+            for (int i = 0; i < 4; i++) {
+                System.out.println("Client 42 request " + (i + 1) + ": " + (limits.allowRequest(42) ? "Allowed" : "Denied"));
+            }
+            System.out.println("Table file: " + Files.size(file) / 1_000_000 + " MB for 1M keys");
+        }
+
+        try (MappedRateLimiterTable limits = new MappedRateLimiterTable(file, 1_000_000, 3, 1)) {
+            System.out.println("\n--- After restarting, the bucket is still empty ---");
+            System.out.println("Client 42 request 5: " + (limits.allowRequest(42) ? "Allowed" : "Denied"));
+            System.out.println("Client 7 request 1: " + (limits.allowRequest(7) ? "Allowed" : "Denied"));
+
+            System.out.println("\n--- Reopening with a different refill rate is refused ---");
+            try {
+                new MappedRateLimiterTable(file, 1_000_000, 3, 10).close();
+            } catch (IllegalStateException e) {
+                System.out.println(e.getMessage());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
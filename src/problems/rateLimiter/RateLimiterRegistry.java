@@ -0,0 +1,206 @@
+package problems.rateLimiter;
+
+import problems.rateLimiter.algorithms.FixedWindowCounter;
+import problems.rateLimiter.algorithms.RateLimiter;
+import problems.rateLimiter.algorithms.Ticker;
+import problems.rateLimiter.algorithms.TokenBucket;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// Keyed rate limiting (per API key, IP, tenant...). Limiters are created lazily on first use and dropped once a key
+// has been idle for longer than the idle timeout, so memory tracks the set of recently active clients.
+public class RateLimiterRegistry<K> {
+
+    private static final int DEFAULT_STRIPES = 64;
+    private static final int SWEEP_BATCH = 16; // Entries a request checks at most while its stripe is being swept
+
+    private final Stripe<K>[] stripes;
+    private final int mask;
+    private final Function<? super K, ? extends RateLimiter> factory;
+    private final long idleTimeoutNanos;
+    private final long touchGranularityNanos;
+    private final Ticker ticker; // Only drives idle eviction, each limiter keeps its own clock
+
+    public RateLimiterRegistry(Function<? super K, ? extends RateLimiter> factory, long idleTimeout, TimeUnit unit) {
+        this(factory, idleTimeout, unit, DEFAULT_STRIPES);
+    }
+
+    public RateLimiterRegistry(Function<? super K, ? extends RateLimiter> factory, long idleTimeout, TimeUnit unit,
+                               int concurrencyLevel) {
+        this(factory, idleTimeout, unit, concurrencyLevel, Ticker.system());
+    }
+
+    @SuppressWarnings("unchecked")
+    public RateLimiterRegistry(Function<? super K, ? extends RateLimiter> factory, long idleTimeout, TimeUnit unit,
+                               int concurrencyLevel, Ticker ticker) {
+        if (idleTimeout <= 0 || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("idleTimeout and concurrencyLevel must be positive");
+        }
+        int stripeCount = Integer.highestOneBit(concurrencyLevel - 1) << 1; // Round up to a power of two
+        if (stripeCount <= 0) {
+            stripeCount = 1;
+        }
+        this.factory = factory;
+        this.ticker = ticker;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        // Last access only needs to be accurate to a fraction of the timeout, which avoids writing a shared
+        // cache line on every request for a hot key
+        this.touchGranularityNanos = idleTimeoutNanos >> 4;
+        this.mask = stripeCount - 1;
+        this.stripes = (Stripe<K>[]) new Stripe<?>[stripeCount];
+        long now = ticker.read();
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>(now + idleTimeoutNanos);
+        }
+    }
+
+    public boolean allowRequest(K key) {
+        return limiterFor(key).allowRequest();
+    }
+
+    public RateLimiter limiterFor(K key) {
+        long now = ticker.read();
+        Stripe<K> stripe = stripeFor(key);
+
+        Entry entry = stripe.limiters.get(key);
+        if (entry == null) {
+            entry = stripe.limiters.computeIfAbsent(key, k -> new Entry(factory.apply(k), now));
+        } else if (now - entry.lastAccessNanos > touchGranularityNanos) {
+            entry.lastAccessNanos = now;
+        }
+
+        if (now - stripe.nextSweepNanos >= 0) {
+            sweepSome(stripe, now);
+        }
+        return entry.limiter;
+    }
+
+    // Removes every key that has been idle for longer than the timeout, in the calling thread
+    public void evictIdle() {
+        long now = ticker.read();
+        for (Stripe<K> stripe : stripes) {
+            stripe.sweepLock.lock();
+            try {
+                for (Map.Entry<K, Entry> e : stripe.limiters.entrySet()) {
+                    removeIfIdle(stripe, e, now);
+                }
+                stripe.cursor = null; // A pass in progress would only revisit what was just checked
+                stripe.nextSweepNanos = now + (idleTimeoutNanos >> 1);
+            } finally {
+                stripe.sweepLock.unlock();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<K> stripe : stripes) {
+            size += stripe.limiters.size();
+        }
+        return size;
+    }
+
+    // Each stripe is swept twice per idle timeout, a slice at a time: while a pass is due, every request to the
+    // stripe checks at most SWEEP_BATCH entries and leaves a cursor for the next one, so no request pays for the whole
+    // stripe however many keys it holds. The map's iterator is weakly consistent, so the cursor stays valid while
+    // keys come and go. A request racing with the sweep may still use the limiter being removed; the key simply
+    // starts from a fresh limiter on its next request.
+    private void sweepSome(Stripe<K> stripe, long now) {
+        if (!stripe.sweepLock.tryLock()) {
+            return; // Another thread is already sweeping this stripe
+        }
+        try {
+            if (stripe.cursor == null) {
+                stripe.cursor = stripe.limiters.entrySet().iterator();
+            }
+            for (int i = 0; i < SWEEP_BATCH && stripe.cursor.hasNext(); i++) {
+                removeIfIdle(stripe, stripe.cursor.next(), now);
+            }
+            if (!stripe.cursor.hasNext()) {
+                stripe.cursor = null;
+                stripe.nextSweepNanos = now + (idleTimeoutNanos >> 1);
+            }
+        } finally {
+            stripe.sweepLock.unlock();
+        }
+    }
+
+    private void removeIfIdle(Stripe<K> stripe, Map.Entry<K, Entry> e, long now) {
+        Entry entry = e.getValue();
+        if (now - entry.lastAccessNanos >= idleTimeoutNanos) {
+            stripe.limiters.remove(e.getKey(), entry);
+        }
+    }
+
+    private Stripe<K> stripeFor(K key) {
+        // Take the stripe from different bits than the ones the map uses for its own buckets
+        int h = key.hashCode() * 0x9E3779B9;
+        return stripes[(h >>> 16) & mask];
+    }
+
+    private static final class Stripe<K> {
+        private final ConcurrentHashMap<K, Entry> limiters = new ConcurrentHashMap<>();
+        private final ReentrantLock sweepLock = new ReentrantLock();
+        private Iterator<Map.Entry<K, Entry>> cursor; // Pass in progress, guarded by sweepLock
+        private volatile long nextSweepNanos;
+
+        private Stripe(long nextSweepNanos) {
+            this.nextSweepNanos = nextSweepNanos;
+        }
+    }
+
+    private static final class Entry {
+        private final RateLimiter limiter;
+        private volatile long lastAccessNanos;
+
+        private Entry(RateLimiter limiter, long lastAccessNanos) {
+            this.limiter = limiter;
+            this.lastAccessNanos = lastAccessNanos;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        RateLimiterRegistry<String> perClient = new RateLimiterRegistry<>(apiKey -> new TokenBucket(3, 1), 500, TimeUnit.MILLISECONDS);
+
+        System.out.println("--- Each API key gets its own bucket ---");
+        for (String apiKey : new String[]{"alice", "bob"}) {
+            for (int i = 0; i < 4; i++) {
+                System.out.println(apiKey + " request " + (i + 1) + ": " + (perClient.allowRequest(apiKey) ? "Allowed" : "Denied"));
+            }
+        }
+        System.out.println("Tracked keys: " + perClient.size());
+
+        System.out.println("\n--- Keys idle past the timeout are evicted ---");
+        Thread.sleep(600);
+        perClient.evictIdle();
+        System.out.println("Tracked keys: " + perClient.size());
+
+        System.out.println("\n--- Requests sweep idle keys a few at a time ---");
+        AtomicLong clock = new AtomicLong();
+        RateLimiterRegistry<Integer> perUser = new RateLimiterRegistry<>(user -> new TokenBucket(3, 1),
+                1, TimeUnit.MINUTES, 1, clock::get);
+        for (int user = 0; user < 1000; user++) {
+            perUser.allowRequest(user);
+        }
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(2)); // Every user goes idle
+        for (int requests = 1; requests <= 64; requests *= 4) {
+            for (int i = 0; i < requests; i++) {
+                perUser.allowRequest(-1);
+            }
+            System.out.println("Tracked keys after " + requests + " more requests from one active user: "
+                    + perUser.size());
+        }
+
+        RateLimiterRegistry<String> perIp = new RateLimiterRegistry<>(ip -> new FixedWindowCounter(2, 1), 1, TimeUnit.MINUTES);
+        System.out.println("\n--- Works with any algorithm ---");
+        for (int i = 0; i < 3; i++) {
+            System.out.println("10.0.0.1 request " + (i + 1) + ": " + (perIp.allowRequest("10.0.0.1") ? "Allowed" : "Denied"));
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package problems.rateLimiter.algorithms;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Limits how many requests are in flight instead of how many arrive per second, and finds the limit by itself from
+// the latency it observes (Little's law: once the backend is saturated, more concurrency only adds queueing delay).
+//
+//  - AIMD: grow the limit by one per window of fast responses, cut it by a ratio after a drop or a slow response.
+//  - GRADIENT: compare the no-load latency baseline with the latest window's average. Their ratio shrinks the limit
+//    as soon as queueing shows up, and a small sqrt(limit) headroom lets it probe upwards. The baseline follows
+//    lower latencies at once and higher ones only slowly, so sustained queueing is not mistaken for the new normal.
+//
+// Samples are aggregated over a window of about one round trip and the limit changes once per window, so a burst of
+// completions reacting to the same queue does not move the limit many times over.
+//
+// Callers take a slot with tryAcquire() and must give it back with exactly one of onSuccess / onDropped / onIgnore.
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Strategy {
+        AIMD, GRADIENT
+    }
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double BASELINE_DRIFT = 1.0 / 500; // How fast the no-load baseline follows rising latency
+    private static final double SMOOTHING = 0.2;
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final long MIN_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Strategy strategy;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long slowResponseNanos; // AIMD only: responses slower than this count as overload
+    private final Ticker ticker;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    // Guarded by this
+    private double estimatedLimit;
+    private double baselineRttNanos;
+    private long windowEnd;
+    private long windowRttSum;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private boolean windowOverloaded;
+
+    public AdaptiveConcurrencyLimiter(Strategy strategy, int initialLimit, int minLimit, int maxLimit,
+                                      long slowResponse, TimeUnit unit) {
+        this(strategy, initialLimit, minLimit, maxLimit, slowResponse, unit, Ticker.system());
+    }
+
+    public AdaptiveConcurrencyLimiter(Strategy strategy, int initialLimit, int minLimit, int maxLimit,
+                                      long slowResponse, TimeUnit unit, Ticker ticker) {
+        if (minLimit <= 0 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 0 < minLimit <= initialLimit <= maxLimit");
+        }
+        this.strategy = strategy;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.slowResponseNanos = unit.toNanos(slowResponse);
+        this.ticker = ticker;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+        this.windowEnd = ticker.read() + MIN_WINDOW_NANOS;
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // The request completed normally; startNanos is the ticker reading taken when it was admitted
+    public void onSuccess(long startNanos) {
+        long now = ticker.read();
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        sample(now, now - startNanos, inFlightAtCompletion, false);
+    }
+
+    // The request timed out or was rejected downstream: a clear overload signal
+    public void onDropped() {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        sample(ticker.read(), 0, inFlightAtCompletion, true);
+    }
+
+    // The request failed for reasons unrelated to load (validation error...), don't learn from it
+    public void onIgnore() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void sample(long now, long rttNanos, int inFlightAtCompletion, boolean dropped) {
+        if (dropped || (strategy == Strategy.AIMD && rttNanos > slowResponseNanos)) {
+            windowOverloaded = true;
+        } else {
+            windowRttSum += rttNanos;
+            windowSamples++;
+        }
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtCompletion);
+
+        if (now - windowEnd < 0 || (windowSamples < MIN_WINDOW_SAMPLES && !windowOverloaded)) {
+            return;
+        }
+        updateLimit();
+
+        long window = (long) Math.max(MIN_WINDOW_NANOS, Math.min(MAX_WINDOW_NANOS, baselineRttNanos * 2));
+        windowEnd = now + window;
+        windowRttSum = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+        windowOverloaded = false;
+    }
+
+    private void updateLimit() {
+        // Only grow when the limit is actually being used, an idle service tells nothing about its capacity
+        boolean appLimited = windowMaxInFlight * 2 < estimatedLimit;
+
+        if (windowOverloaded) {
+            estimatedLimit *= BACKOFF_RATIO;
+        } else if (windowSamples > 0) {
+            double shortRttNanos = (double) windowRttSum / windowSamples;
+            if (baselineRttNanos == 0 || shortRttNanos < baselineRttNanos) {
+                baselineRttNanos = shortRttNanos;
+            } else {
+                baselineRttNanos += (shortRttNanos - baselineRttNanos) * BASELINE_DRIFT;
+            }
+
+            if (strategy == Strategy.AIMD) {
+                if (!appLimited) {
+                    estimatedLimit += 1;
+                }
+            } else if (!appLimited || shortRttNanos > baselineRttNanos) {
+                double gradient = Math.max(0.5, Math.min(1.0, baselineRttNanos / shortRttNanos));
+                double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+                estimatedLimit = estimatedLimit * (1 - SMOOTHING) + target * SMOOTHING;
+            }
+        }
+
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        // Simulated backend: 5ms per request up to 20 concurrent requests, beyond that requests queue up
+        AtomicInteger backendLoad = new AtomicInteger();
+        int knee = 20;
+
+        for (Strategy strategy : Strategy.values()) {
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(strategy, 5, 1, 200, 15, TimeUnit.MILLISECONDS);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+            Thread[] clients = new Thread[40];
+
+            for (int t = 0; t < clients.length; t++) {
+                clients[t] = new Thread(() -> {
+                    while (System.nanoTime() < deadline) {
+                        if (!limiter.tryAcquire()) {
+                            LockSupport.parkNanos(1_000_000); // Rejected, retry shortly
+                            continue;
+                        }
+                        long start = System.nanoTime();
+                        int load = backendLoad.incrementAndGet();
+                        try {
+                            long latencyMillis = 5 + Math.max(0, load - knee);
+                            Thread.sleep(latencyMillis);
+                            limiter.onSuccess(start);
+                        } catch (InterruptedException e) {
+                            limiter.onIgnore();
+                            return;
+                        } finally {
+                            backendLoad.decrementAndGet();
+                        }
+                    }
+                });
+                clients[t].start();
+            }
+            for (Thread client : clients) {
+                client.join();
+            }
+            System.out.println(strategy + " settled at a concurrency limit of " + limiter.getLimit() + " (backend knee is " + knee + ")");
+        }
+    }
+}
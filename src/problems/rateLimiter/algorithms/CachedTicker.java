@@ -0,0 +1,43 @@
+package problems.rateLimiter.algorithms;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Coarse clock for hot paths: a daemon thread refreshes a volatile field at a fixed resolution, so reading the time
+// is a plain memory read instead of a clock call. Decisions are only as precise as the resolution.
+public class CachedTicker implements Ticker, AutoCloseable {
+
+    private final long resolutionNanos;
+    private final Thread updater;
+    private volatile long now;
+    private volatile boolean closed;
+
+    public CachedTicker(long resolution, TimeUnit unit) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("resolution must be positive");
+        }
+        this.resolutionNanos = unit.toNanos(resolution);
+        this.now = System.nanoTime();
+        this.updater = new Thread(this::runUpdater, "cached-ticker");
+        this.updater.setDaemon(true);
+        this.updater.start();
+    }
+
+    @Override
+    public long read() {
+        return now;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(updater);
+    }
+
+    private void runUpdater() {
+        while (!closed) {
+            LockSupport.parkNanos(resolutionNanos);
+            now = System.nanoTime();
+        }
+    }
+}
@@ -3,37 +3,88 @@ package problems.rateLimiter.algorithms;
 
 import java.util.concurrent.atomic.AtomicLong;
 
-public class FixedWindowCounter {
+public class FixedWindowCounter implements RateLimiter {
 
-    private final long windowSizeInMillis;
+    private final long windowSizeInNanos;
     private final int limit;
     private final AtomicLong requestCount;
     private long windowStartTime;
+    private final Ticker ticker;
 
     public FixedWindowCounter(int limit, long windowSizeInSeconds) {
+        this(limit, windowSizeInSeconds, Ticker.system());
+    }
+
+    public FixedWindowCounter(int limit, long windowSizeInSeconds, Ticker ticker) {
+        this.ticker = ticker;
         this.limit = limit;
-        this.windowSizeInMillis = windowSizeInSeconds * 1000;
-        this.windowStartTime = System.currentTimeMillis();
+        this.windowSizeInNanos = windowSizeInSeconds * 1_000_000_000L;
+        this.windowStartTime = ticker.read();
         this.requestCount = new AtomicLong(0);
     }
 
-    public synchronized boolean allowRequest() {
-        long currentTime = System.currentTimeMillis();
+    @Override
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, ticker.read());
+    }
 
-        // If the current time is in a new window, reset the counter
-        if (currentTime - windowStartTime >= windowSizeInMillis) {
-            windowStartTime = currentTime;
-            requestCount.set(0);
+    @Override
+    public synchronized boolean tryAcquire(int permits, long nowNanos) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive");
         }
+        resetWindowIfExpired(nowNanos);
 
-        // Check if the current request count is below the limit
-        if (requestCount.get() < limit) {
-            requestCount.incrementAndGet();
+        // Check if the current request count leaves room for the permits
+        if (requestCount.get() + permits <= limit) {
+            requestCount.addAndGet(permits);
             return true;
         }
         return false;
     }
 
+    @Override
+    public synchronized int tryAcquire(int[] permits, boolean[] decisions) {
+        resetWindowIfExpired(ticker.read());
+
+        long count = requestCount.get();
+        int granted = 0;
+        for (int i = 0; i < permits.length; i++) {
+            if (permits[i] <= 0) {
+                throw new IllegalArgumentException("permits must be positive");
+            }
+            decisions[i] = count + permits[i] <= limit;
+            if (decisions[i]) {
+                count += permits[i];
+                granted++;
+            }
+        }
+        requestCount.set(count);
+        return granted;
+    }
+
+    // Only counts if the request was taken in the window that is still current
+    @Override
+    public synchronized void release(int permits, long nowNanos) {
+        if (nowNanos - windowStartTime >= 0 && nowNanos - windowStartTime < windowSizeInNanos) {
+            requestCount.set(Math.max(0, requestCount.get() - permits));
+        }
+    }
+
+    @Override
+    public synchronized long availablePermits() {
+        resetWindowIfExpired(ticker.read());
+        return limit - requestCount.get();
+    }
+
+    // If the current time is in a new window, reset the counter
+    private void resetWindowIfExpired(long currentTime) {
+        if (currentTime - windowStartTime >= windowSizeInNanos) {
+            windowStartTime = currentTime;
+            requestCount.set(0);
+        }
+    }
+
 
     public static void main(String[] args) throws InterruptedException {
         FixedWindowCounter limiter = new FixedWindowCounter(3, 2); // 3 requests per 2 seconds
@@ -0,0 +1,97 @@
+package problems.rateLimiter.algorithms;
+
+import problems.rateLimiter.RateLimiterRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+// Several limits that must all hold, e.g. per user, per tenant and global. A request reads the clock once, takes its
+// permits from every tier in order and, if any tier denies, gives back what it already took from the tiers before it.
+// Each tier stays independently thread-safe, there is no lock across tiers: a request that is later refunded may
+// briefly hold permits another request wanted, which can only cause a spurious deny, never exceeding a limit.
+//
+// Put the most specific (most often exhausted, least shared) tier first so denials rarely touch the shared tiers.
+public class HierarchicalRateLimiter implements RateLimiter {
+
+    private final RateLimiter[] tiers;
+    private final Ticker ticker;
+
+    public HierarchicalRateLimiter(RateLimiter... tiers) {
+        this(Ticker.system(), tiers);
+    }
+
+    // The tiers must run on the same ticker
+    public HierarchicalRateLimiter(Ticker ticker, RateLimiter... tiers) {
+        if (tiers.length == 0) {
+            throw new IllegalArgumentException("At least one tier is required");
+        }
+        this.tiers = tiers.clone();
+        this.ticker = ticker;
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, ticker.read());
+    }
+
+    @Override
+    public boolean tryAcquire(int permits, long nowNanos) {
+        for (int i = 0; i < tiers.length; i++) {
+            if (!tiers[i].tryAcquire(permits, nowNanos)) {
+                refund(i, permits, nowNanos);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int tryAcquire(int[] permits, boolean[] decisions) {
+        long nowNanos = ticker.read();
+        int granted = 0;
+        for (int i = 0; i < permits.length; i++) {
+            decisions[i] = tryAcquire(permits[i], nowNanos);
+            if (decisions[i]) {
+                granted++;
+            }
+        }
+        return granted;
+    }
+
+    @Override
+    public void release(int permits, long nowNanos) {
+        refund(tiers.length, permits, nowNanos);
+    }
+
+    // The tightest tier decides
+    @Override
+    public long availablePermits() {
+        long available = Long.MAX_VALUE;
+        for (RateLimiter tier : tiers) {
+            available = Math.min(available, tier.availablePermits());
+        }
+        return available;
+    }
+
+    // Gives back the permits taken from the first 'taken' tiers
+    private void refund(int taken, int permits, long nowNanos) {
+        for (int i = taken - 1; i >= 0; i--) {
+            tiers[i].release(permits, nowNanos);
+        }
+    }
+
+    public static void main(String[] args) {
+        TokenBucket global = new TokenBucket(5, 1);
+        TokenBucket tenantAcme = new TokenBucket(4, 1);
+
+        // One composite per user, cached by the registry: user bucket -> tenant bucket -> global bucket
+        RateLimiterRegistry<String> users = new RateLimiterRegistry<>(
+                user -> new HierarchicalRateLimiter(new TokenBucket(3, 1), tenantAcme, global), 10, TimeUnit.MINUTES);
+
+        for (String user : new String[]{"alice", "bob", "carol"}) {
+            for (int i = 0; i < 3; i++) {
+                System.out.println(user + " request " + (i + 1) + ": " + (users.allowRequest(user) ? "Allowed" : "Denied"));
+            }
+        }
+        System.out.println("Tenant tokens left: " + tenantAcme.availablePermits() + ", global tokens left: " + global.availablePermits());
+    }
+}
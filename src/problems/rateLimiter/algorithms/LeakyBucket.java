@@ -1,25 +1,101 @@
 package problems.rateLimiter.algorithms;
 
 
-import java.util.Random;
-import java.util.concurrent.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-@SuppressWarnings("all")
-public class LeakyBucket {
+// Leaky bucket as a meter (GCRA). Instead of a queue drained by a timer, the bucket remembers the "theoretical
+// arrival time": the instant at which everything accepted so far will have leaked out. The fill level at any moment
+// is derived from it, so leakage is worked out lazily on each call with no background thread.
+public class LeakyBucket implements RateLimiter {
 
-    private final BlockingQueue<Integer> bucket;
     private final int bucketCapacity;
+    private final long leakIntervalNanos; // One request leaks out every interval
+    private final long capacityNanos; // Time it takes for a full bucket to drain
+    private final AtomicLong drainedAt; // Theoretical arrival time: when the bucket will be empty
+    private final Ticker ticker;
 
     public LeakyBucket(int bucketCapacity, long leakRateInMillis) {
+        this(bucketCapacity, leakRateInMillis, Ticker.system());
+    }
+
+    public LeakyBucket(int bucketCapacity, long leakRateInMillis, Ticker ticker) {
+        if (bucketCapacity <= 0 || leakRateInMillis <= 0) {
+            throw new IllegalArgumentException("bucketCapacity and leakRateInMillis must be positive");
+        }
         this.bucketCapacity = bucketCapacity;
-        this.bucket = new ArrayBlockingQueue<>(bucketCapacity);
-        // Schedule a task to "leak" requests at the specified rate
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(() -> bucket.poll(), leakRateInMillis, leakRateInMillis, TimeUnit.MILLISECONDS);
+        this.leakIntervalNanos = TimeUnit.MILLISECONDS.toNanos(leakRateInMillis);
+        this.capacityNanos = leakIntervalNanos * bucketCapacity;
+        this.ticker = ticker;
+        this.drainedAt = new AtomicLong(ticker.read());
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, ticker.read());
+    }
+
+    @Override
+    public boolean tryAcquire(int permits, long currentTime) {
+        long cost = costOf(permits);
+        while (true) {
+            long current = drainedAt.get();
+
+            // An empty bucket does not bank leakage: new water starts from now
+            long next = Math.max(current, currentTime) + cost;
+
+            if (next - currentTime > capacityNanos) {
+                return false; // Bucket would overflow, drop the request
+            }
+            if (drainedAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public int tryAcquire(int[] permits, boolean[] decisions) {
+        long currentTime = ticker.read();
+        while (true) {
+            long current = drainedAt.get();
+            long next = Math.max(current, currentTime);
+            int granted = 0;
+
+            for (int i = 0; i < permits.length; i++) {
+                long filled = next + costOf(permits[i]);
+                decisions[i] = filled - currentTime <= capacityNanos;
+                if (decisions[i]) {
+                    next = filled;
+                    granted++;
+                }
+            }
+            if (granted == 0 || drainedAt.compareAndSet(current, next)) {
+                return granted;
+            }
+        }
+    }
+
+    @Override
+    public void release(int permits, long nowNanos) {
+        drainedAt.addAndGet(-costOf(Math.min(permits, bucketCapacity))); // Draining below 'now' is ignored on the next call
+    }
+
+    @Override
+    public long availablePermits() {
+        long currentTime = ticker.read();
+        long level = Math.max(0L, drainedAt.get() - currentTime); // Water still in the bucket, in time units
+        return (capacityNanos - level) / leakIntervalNanos;
+    }
+
+    private long costOf(int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive");
+        }
+        return permits > bucketCapacity ? Long.MAX_VALUE / 2 : permits * leakIntervalNanos; // Never fits
     }
 
-    public boolean allowRequest() {
-        return bucket.offer(new Random().nextInt());
+    public int getBucketCapacity() {
+        return bucketCapacity;
     }
 
     public static void main(String[] args) throws InterruptedException {
@@ -37,4 +113,4 @@ public class LeakyBucket {
         System.out.println("Request 6: " + (limiter.allowRequest() ? "Added to bucket" : "Dropped"));
     }
 
-}
\ No newline at end of file
+}
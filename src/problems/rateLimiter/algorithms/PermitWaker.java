@@ -0,0 +1,83 @@
+package problems.rateLimiter.algorithms;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// One daemon thread shared by every TokenBucket that has waiters. Buckets ask to be woken at the exact instant their
+// next permit is refilled, so nothing polls while callers wait.
+final class PermitWaker {
+
+    private static final PermitWaker SHARED = new PermitWaker();
+
+    private final PriorityQueue<Wakeup> wakeups = new PriorityQueue<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeupAvailable = lock.newCondition();
+
+    private PermitWaker() {
+        Thread thread = new Thread(this::runWorker, "permit-waker");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static PermitWaker shared() {
+        return SHARED;
+    }
+
+    void schedule(TokenBucket bucket, long wakeAtNanos) {
+        lock.lock();
+        try {
+            Wakeup wakeup = new Wakeup(bucket, wakeAtNanos);
+            wakeups.offer(wakeup);
+            if (wakeups.peek() == wakeup) {
+                wakeupAvailable.signal(); // Earlier than what the worker is sleeping for
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            Wakeup due;
+            lock.lock();
+            try {
+                due = wakeups.peek();
+                if (due == null) {
+                    wakeupAvailable.await();
+                    continue;
+                }
+                long delay = due.wakeAtNanos - System.nanoTime();
+                if (delay > 0) {
+                    wakeupAvailable.await(delay, TimeUnit.NANOSECONDS);
+                    continue;
+                }
+                wakeups.poll();
+            } catch (InterruptedException e) {
+                continue; // Nobody interrupts this thread on purpose, keep serving waiters
+            } finally {
+                lock.unlock();
+            }
+
+            // Hand out permits outside the lock, completing futures may run caller callbacks. A failure is reported
+            // through the future of the waiter it belongs to, so nothing is thrown here.
+            due.bucket.wakeWaiters();
+        }
+    }
+
+    private static final class Wakeup implements Comparable<Wakeup> {
+        private final TokenBucket bucket;
+        private final long wakeAtNanos;
+
+        private Wakeup(TokenBucket bucket, long wakeAtNanos) {
+            this.bucket = bucket;
+            this.wakeAtNanos = wakeAtNanos;
+        }
+
+        @Override
+        public int compareTo(Wakeup other) {
+            return Long.compare(wakeAtNanos - other.wakeAtNanos, 0); // nanoTime values may wrap
+        }
+    }
+}
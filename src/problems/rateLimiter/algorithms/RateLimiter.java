@@ -0,0 +1,36 @@
+package problems.rateLimiter.algorithms;
+
+public interface RateLimiter {
+
+    default boolean allowRequest() {
+        return tryAcquire(1);
+    }
+
+    // Weighted request: takes 'permits' units at once, or nothing. Reads the limiter's own Ticker, so wrappers must
+    // forward it to the delegate rather than pick a clock themselves.
+    boolean tryAcquire(int permits);
+
+    // Same decision against a reading of the limiter's Ticker taken by the caller, so composite limiters read the
+    // clock once
+    boolean tryAcquire(int permits, long nowNanos);
+
+    // Decides a whole batch in one pass (one clock read, one lock or CAS). Requests are granted in array order,
+    // decisions[i] tells whether permits[i] was granted. Returns the number of granted requests.
+    default int tryAcquire(int[] permits, boolean[] decisions) {
+        int granted = 0;
+        for (int i = 0; i < permits.length; i++) {
+            decisions[i] = tryAcquire(permits[i]);
+            if (decisions[i]) {
+                granted++;
+            }
+        }
+        return granted;
+    }
+
+    // Gives back permits taken at nowNanos that ended up unused
+    void release(int permits, long nowNanos);
+
+    // Permits a single request could take right now
+    long availablePermits();
+
+}
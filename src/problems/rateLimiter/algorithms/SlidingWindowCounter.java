@@ -0,0 +1,118 @@
+package problems.rateLimiter.algorithms;
+
+// Splits the window into sub-windows kept in a ring buffer. Expired sub-windows are cleared as the window slides,
+// so the limit holds over any window-sized interval (up to one sub-window of slack) and there is no boundary burst.
+public class SlidingWindowCounter implements RateLimiter {
+
+    private final int limit;
+    private final long subWindowNanos;
+    private final int[] counts; // Requests per sub-window, indexed by sub-window number modulo the ring size
+    private long currentSubWindow; // Latest sub-window the ring has been advanced to
+    private int total; // Sum of all counts, so a decision never has to walk the ring
+    private final Ticker ticker;
+
+    public SlidingWindowCounter(int limit, long windowSizeInSeconds, int subWindows) {
+        this(limit, windowSizeInSeconds, subWindows, Ticker.system());
+    }
+
+    public SlidingWindowCounter(int limit, long windowSizeInSeconds, int subWindows, Ticker ticker) {
+        if (limit <= 0 || windowSizeInSeconds <= 0 || subWindows <= 0) {
+            throw new IllegalArgumentException("limit, windowSizeInSeconds and subWindows must be positive");
+        }
+        this.limit = limit;
+        this.subWindowNanos = Math.max(1L, windowSizeInSeconds * 1_000_000_000L / subWindows);
+        this.counts = new int[subWindows];
+        this.ticker = ticker;
+        this.currentSubWindow = Math.floorDiv(ticker.read(), subWindowNanos);
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, ticker.read());
+    }
+
+    @Override
+    public synchronized boolean tryAcquire(int permits, long nowNanos) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive");
+        }
+        slide(Math.floorDiv(nowNanos, subWindowNanos));
+
+        if (permits <= limit - total) {
+            counts[Math.floorMod(currentSubWindow, counts.length)] += permits;
+            total += permits;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized int tryAcquire(int[] permits, boolean[] decisions) {
+        slide(Math.floorDiv(ticker.read(), subWindowNanos));
+
+        int index = Math.floorMod(currentSubWindow, counts.length);
+        int granted = 0;
+        for (int i = 0; i < permits.length; i++) {
+            if (permits[i] <= 0) {
+                throw new IllegalArgumentException("permits must be positive");
+            }
+            decisions[i] = permits[i] <= limit - total;
+            if (decisions[i]) {
+                counts[index] += permits[i];
+                total += permits[i];
+                granted++;
+            }
+        }
+        return granted;
+    }
+
+    // Taken back from the sub-window the permits were granted in. Once that sub-window has slid out of the ring its
+    // count is gone already, and the slot now belongs to a later sub-window, so there is nothing to give back.
+    @Override
+    public synchronized void release(int permits, long nowNanos) {
+        long subWindow = Math.floorDiv(nowNanos, subWindowNanos);
+        if (subWindow > currentSubWindow || currentSubWindow - subWindow >= counts.length) {
+            return;
+        }
+        int index = Math.floorMod(subWindow, counts.length);
+        int released = Math.min(permits, counts[index]);
+        counts[index] -= released;
+        total -= released;
+    }
+
+    @Override
+    public synchronized long availablePermits() {
+        slide(Math.floorDiv(ticker.read(), subWindowNanos));
+        return limit - total;
+    }
+
+    // Clears every sub-window that fell out of the window since the last call, at most one full turn of the ring
+    private void slide(long subWindow) {
+        long steps = Math.min(subWindow - currentSubWindow, counts.length);
+        for (long i = 1; i <= steps; i++) {
+            int index = Math.floorMod(currentSubWindow + i, counts.length);
+            total -= counts[index];
+            counts[index] = 0;
+        }
+        if (subWindow > currentSubWindow) {
+            currentSubWindow = subWindow;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        SlidingWindowCounter limiter = new SlidingWindowCounter(3, 2, 4); // 3 requests per 2 seconds, 500ms sub-windows
+
+        System.out.println("--- Burst at the end of a window ---");
+        for (int i = 0; i < 4; i++) {
+            System.out.println("Request " + (i + 1) + ": " + (limiter.allowRequest() ? "Allowed" : "Denied"));
+        }
+
+        System.out.println("\n--- 1 second later the burst is still inside the window ---");
+        Thread.sleep(1000);
+        System.out.println("Request 5: " + (limiter.allowRequest() ? "Allowed" : "Denied"));
+
+        System.out.println("\n--- 2.5 seconds later the burst has slid out ---");
+        Thread.sleep(1500);
+        System.out.println("Request 6: " + (limiter.allowRequest() ? "Allowed" : "Denied"));
+    }
+}
@@ -0,0 +1,113 @@
+package problems.rateLimiter.algorithms;
+
+// Exact sliding window: remembers the timestamp of every accepted request in the window. At most 'limit' requests
+// can be in the window, so the log is a fixed ring of primitive longs and no objects are created per request.
+public class SlidingWindowLog implements RateLimiter {
+
+    private final long windowSizeInNanos;
+    private final long[] log; // Accepted request timestamps, oldest at head
+    private int head;
+    private int size;
+    private final Ticker ticker;
+
+    public SlidingWindowLog(int limit, long windowSizeInSeconds) {
+        this(limit, windowSizeInSeconds, Ticker.system());
+    }
+
+    public SlidingWindowLog(int limit, long windowSizeInSeconds, Ticker ticker) {
+        if (limit <= 0 || windowSizeInSeconds <= 0) {
+            throw new IllegalArgumentException("limit and windowSizeInSeconds must be positive");
+        }
+        this.windowSizeInNanos = windowSizeInSeconds * 1_000_000_000L;
+        this.log = new long[limit];
+        this.ticker = ticker;
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, ticker.read());
+    }
+
+    @Override
+    public synchronized boolean tryAcquire(int permits, long currentTime) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive");
+        }
+        expire(currentTime);
+        return append(currentTime, permits);
+    }
+
+    @Override
+    public synchronized int tryAcquire(int[] permits, boolean[] decisions) {
+        long currentTime = ticker.read();
+        expire(currentTime);
+
+        int granted = 0;
+        for (int i = 0; i < permits.length; i++) {
+            if (permits[i] <= 0) {
+                throw new IllegalArgumentException("permits must be positive");
+            }
+            decisions[i] = append(currentTime, permits[i]);
+            if (decisions[i]) {
+                granted++;
+            }
+        }
+        return granted;
+    }
+
+    // Drops the newest entries, which are the ones the released request appended
+    @Override
+    public synchronized void release(int permits, long nowNanos) {
+        size -= Math.min(permits, size);
+    }
+
+    @Override
+    public synchronized long availablePermits() {
+        expire(ticker.read());
+        return log.length - size;
+    }
+
+    // Discard timestamps that are no longer inside the window
+    private void expire(long currentTime) {
+        long windowStart = currentTime - windowSizeInNanos;
+        while (size > 0 && log[head] - windowStart <= 0) {
+            head = next(head);
+            size--;
+        }
+    }
+
+    // A weighted request occupies one log slot per permit
+    private boolean append(long currentTime, int permits) {
+        if (permits > log.length - size) {
+            return false;
+        }
+        for (int i = 0; i < permits; i++) {
+            log[index(size)] = currentTime;
+            size++;
+        }
+        return true;
+    }
+
+    private int next(int i) {
+        return i + 1 == log.length ? 0 : i + 1;
+    }
+
+    private int index(int offset) {
+        int i = head + offset;
+        return i >= log.length ? i - log.length : i;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        SlidingWindowLog limiter = new SlidingWindowLog(3, 1); // 3 requests per second
+
+        System.out.println("--- Spread out requests ---");
+        for (int i = 0; i < 4; i++) {
+            System.out.println("Request " + (i + 1) + ": " + (limiter.allowRequest() ? "Allowed" : "Denied"));
+            Thread.sleep(300);
+        }
+
+        System.out.println("\n--- The first request has left the window ---");
+        System.out.println("Request 5: " + (limiter.allowRequest() ? "Allowed" : "Denied"));
+        System.out.println("Request 6: " + (limiter.allowRequest() ? "Allowed" : "Denied"));
+    }
+}
@@ -0,0 +1,14 @@
+package problems.rateLimiter.algorithms;
+
+// Source of time for the limiters, in nanoseconds with an arbitrary origin (like System.nanoTime()).
+// Injecting it lets a limiter run on a coarse cached clock in production or on virtual time in a simulation.
+@FunctionalInterface
+public interface Ticker {
+
+    long read();
+
+    static Ticker system() {
+        return System::nanoTime; // Non-capturing, the same instance every time
+    }
+
+}
@@ -1,40 +1,282 @@
 package problems.rateLimiter.algorithms;
 
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
-public class TokenBucket {
+public class TokenBucket implements RateLimiter {
     private final int capacity;
     private final int refillRate; // Tokens per second to refill
-    private final AtomicLong tokens;
-    private final AtomicLong lastRefillTime; // Last Refill Time
+    private final long nanosPerToken; // Time it takes to refill a single token
+    private final long burstNanos; // Time it takes to refill the whole bucket
+    private final Ticker ticker;
+
+    // Tokens and last refill time packed into one value: the instant at which the bucket was (or will be) empty.
+    // Tokens available at 'now' = min(capacity, (now - emptyAt) / nanosPerToken), so one CAS updates both.
+    private final AtomicLong emptyAt;
+
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>(); // Callers waiting for permits, in FIFO order
+    private final AtomicBoolean wakeupScheduled = new AtomicBoolean();
 
     public TokenBucket(int capacity, int refillRate) {
+        this(capacity, refillRate, Ticker.system());
+    }
+
+    public TokenBucket(int capacity, int refillRate, Ticker ticker) {
+        if (capacity <= 0 || refillRate <= 0) {
+            throw new IllegalArgumentException("capacity and refillRate must be positive");
+        }
         this.capacity = capacity;
         this.refillRate = refillRate;
-        this.tokens = new AtomicLong(capacity);
-        this.lastRefillTime = new AtomicLong(System.nanoTime());
+        this.nanosPerToken = Math.max(1L, 1_000_000_000L / refillRate);
+        this.burstNanos = nanosPerToken * capacity;
+        this.ticker = ticker;
+        this.emptyAt = new AtomicLong(ticker.read() - burstNanos); // Start with a full bucket
+    }
+
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, ticker.read());
+    }
+
+    @Override
+    public boolean tryAcquire(int permits, long currentTime) {
+        long cost = costOf(permits);
+        while (true) {
+            long current = emptyAt.get();
+
+            // Refill: a bucket that has been idle for longer than a full refill is capped at capacity
+            long refilled = Math.max(current, currentTime - burstNanos);
+            long next = refilled + cost; // Take the tokens
+
+            if (next - currentTime > 0) {
+                return false; // Not enough whole tokens available yet
+            }
+            if (emptyAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public int tryAcquire(int[] permits, boolean[] decisions) {
+        long currentTime = ticker.read();
+        while (true) {
+            long current = emptyAt.get();
+            long next = Math.max(current, currentTime - burstNanos);
+            int granted = 0;
+
+            for (int i = 0; i < permits.length; i++) {
+                long taken = next + costOf(permits[i]);
+                decisions[i] = taken - currentTime <= 0;
+                if (decisions[i]) {
+                    next = taken;
+                    granted++;
+                }
+            }
+            // The whole batch is published with a single CAS, or re-decided against the new state
+            if (granted == 0 || emptyAt.compareAndSet(current, next)) {
+                return granted;
+            }
+        }
+    }
+
+    @Override
+    public long availablePermits() {
+        long currentTime = ticker.read();
+        long refilled = Math.max(emptyAt.get(), currentTime - burstNanos);
+        return Math.max(0L, (currentTime - refilled) / nanosPerToken);
+    }
+
+    // Takes as many permits as are available right now, up to maxPermits. Returns the number taken.
+    public int tryAcquireUpTo(int maxPermits) {
+        costOf(maxPermits);
+        long currentTime = ticker.read();
+        while (true) {
+            long current = emptyAt.get();
+            long refilled = Math.max(current, currentTime - burstNanos);
+            long available = (currentTime - refilled) / nanosPerToken;
+            int taken = (int) Math.min(available, maxPermits);
+
+            if (taken <= 0) {
+                return 0;
+            }
+            if (emptyAt.compareAndSet(current, refilled + taken * nanosPerToken)) {
+                return taken;
+            }
+        }
     }
 
+    // Waiting is done in real time, so acquire() and acquireAsync() need a ticker that follows System.nanoTime().
+    // Waits up to the timeout for the permits. Waiters are served in arrival order, together with acquireAsync().
+    public boolean acquire(int permits, long timeout, TimeUnit unit) throws InterruptedException {
+        costOf(permits);
+        if (permits > capacity) {
+            throw new IllegalArgumentException("permits exceed the bucket capacity");
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (waiters.isEmpty()) {
+            if (tryAcquire(permits)) {
+                return true;
+            }
+            if (nanosUntil(permits) > deadline - System.nanoTime()) {
+                return false; // The refill math says the permits cannot arrive in time, don't bother waiting
+            }
+        }
 
-    public synchronized boolean allowedRequest() {
-        refillTokens();
-        if (tokens.get() > 0) {
-            tokens.decrementAndGet();
+        CompletableFuture<Void> permit = acquireAsync(permits);
+        try {
+            permit.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
             return true;
+        } catch (TimeoutException e) {
+            return !permit.cancel(false); // Lost the race with the waker: the permits were granted after all
+        } catch (InterruptedException e) {
+            if (!permit.cancel(false)) {
+                release(permits);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Waking waiters failed", e.getCause());
+        }
+    }
+
+    // Completes once the permits have been taken. Cancelling the future gives up the place in the queue.
+    public CompletableFuture<Void> acquireAsync(int permits) {
+        costOf(permits);
+        if (permits > capacity) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("permits exceed the bucket capacity"));
         }
-        return false;
+        if (waiters.isEmpty() && tryAcquire(permits)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Waiter waiter = new Waiter(permits);
+        waiters.add(waiter);
+        scheduleWakeup(System.nanoTime() + nanosUntil(permits));
+        return waiter.permit;
+    }
+
+    // Time until the permits can be taken, 0 if they are available right now
+    long nanosUntil(int permits) {
+        long currentTime = ticker.read();
+        long refilled = Math.max(emptyAt.get(), currentTime - burstNanos);
+        return Math.max(0L, refilled + costOf(permits) - currentTime);
     }
 
-    private void refillTokens() {
-        long currentTime = System.nanoTime();
-        long timeElapsed = (currentTime - lastRefillTime.get()) / 1_000_000_000L; // In seconds;
-        long tokensToAdd = timeElapsed * refillRate; // Should be greater than 0
+    // Puts back permits that were taken but not used
+    public void release(int permits) {
+        emptyAt.addAndGet(-costOf(Math.min(permits, capacity))); // Anything above capacity is capped on the next refill
+    }
+
+    @Override
+    public void release(int permits, long nowNanos) {
+        release(permits);
+    }
+
+    // Called by the waker thread only, so the head of the queue cannot change under it
+    void wakeWaiters() {
+        wakeupScheduled.set(false); // Cleared first so that a waiter added from now on schedules its own wakeup
+        Waiter head;
+        while ((head = waiters.peek()) != null) {
+            if (head.permit.isDone()) {
+                waiters.poll(); // Cancelled or timed out
+                continue;
+            }
+            boolean acquired;
+            try {
+                acquired = tryAcquire(head.permits);
+            } catch (RuntimeException e) {
+                waiters.poll();
+                head.permit.completeExceptionally(e); // The waiter hears about it, the waker keeps serving the rest
+                continue;
+            }
+            if (acquired) {
+                waiters.poll();
+                if (!head.permit.complete(null)) {
+                    release(head.permits); // Cancelled while we were taking its permits
+                }
+            } else {
+                scheduleWakeup(System.nanoTime() + nanosUntil(head.permits));
+                return;
+            }
+        }
+    }
+
+    private void scheduleWakeup(long wakeAtNanos) {
+        if (wakeupScheduled.compareAndSet(false, true)) {
+            PermitWaker.shared().schedule(this, wakeAtNanos);
+        }
+    }
+
+    private long costOf(int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive");
+        }
+        return permits > capacity ? Long.MAX_VALUE / 2 : permits * nanosPerToken; // More than capacity never fits
+    }
+
+    public boolean allowedRequest() {
+        return allowRequest();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getRefillRate() {
+        return refillRate;
+    }
+
+    private static final class Waiter {
+        private final int permits;
+        private final CompletableFuture<Void> permit = new CompletableFuture<>();
+
+        private Waiter(int permits) {
+            this.permits = permits;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        TokenBucket limiter = new TokenBucket(5, 10); // Burst of 5, refills 10 tokens per second (one every 100ms)
+
+        System.out.println("--- Burst Test ---");
+        for (int i = 0; i < 7; i++) {
+            System.out.println("Request " + (i + 1) + ": " + (limiter.allowRequest() ? "Allowed" : "Denied"));
+        }
+
+        System.out.println("\n--- Waiting 250ms, two tokens should be refilled ---");
+        Thread.sleep(250);
+
+        for (int i = 7; i < 10; i++) {
+            System.out.println("Request " + (i + 1) + ": " + (limiter.allowRequest() ? "Allowed" : "Denied"));
+        }
+
+        System.out.println("\n--- Waiting 500ms, then a weighted batch ---");
+        Thread.sleep(500);
+
+        int[] costs = {3, 3, 1};
+        boolean[] decisions = new boolean[costs.length];
+        limiter.tryAcquire(costs, decisions);
+        for (int i = 0; i < costs.length; i++) {
+            System.out.println("Request costing " + costs[i] + ": " + (decisions[i] ? "Allowed" : "Denied"));
+        }
 
-        if (tokensToAdd > 0) {
-            long maxToken = Math.min(tokens.get() + tokensToAdd, capacity);
-            tokens.set(maxToken);
-            lastRefillTime.set(currentTime);
+        System.out.println("\n--- Waiting for permits instead of failing ---");
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            int request = i + 1;
+            limiter.acquireAsync(2).thenRun(() -> System.out.println("Async request " + request + " granted after "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms"));
         }
+        System.out.println("Blocking request granted: " + limiter.acquire(1, 1, TimeUnit.SECONDS) + " after "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        System.out.println("Request with a 50ms timeout granted: " + limiter.acquire(5, 50, TimeUnit.MILLISECONDS));
     }
 
 }
@@ -0,0 +1,33 @@
+package problems.rateLimiter.distributed;
+
+import problems.rateLimiter.algorithms.TokenBucket;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process stand-in for the shared backend, for tests and demos. Counts round trips so callers can see how many
+// requests actually had to leave the node.
+public class InMemoryStateStore implements RateLimitStateStore {
+
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong roundTrips = new AtomicLong();
+
+    @Override
+    public int lease(String key, int requested, int capacity, int refillRate) {
+        roundTrips.incrementAndGet();
+        return buckets.computeIfAbsent(key, k -> new TokenBucket(capacity, refillRate)).tryAcquireUpTo(requested);
+    }
+
+    @Override
+    public void giveBack(String key, int unused) {
+        roundTrips.incrementAndGet();
+        TokenBucket bucket = buckets.get(key);
+        if (bucket != null && unused > 0) {
+            bucket.release(unused);
+        }
+    }
+
+    public long getRoundTrips() {
+        return roundTrips.get();
+    }
+}
@@ -0,0 +1,150 @@
+package problems.rateLimiter.distributed;
+
+import problems.rateLimiter.algorithms.RateLimiter;
+import problems.rateLimiter.algorithms.Ticker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Node-local view of a global token bucket. The node leases a batch of tokens from the shared store and spends them
+// locally, so only one request per batch leaves the node.
+//
+// Every token spent was taken from the global bucket, so the nodes together never admit more than the global limit.
+// Batching shifts when tokens are spent: a node may spend tokens it leased up to leaseTtl ago, so over any interval
+// the cluster can run ahead of the global bucket by at most (nodes x maxLeaseSize) requests. maxLeaseSize and leaseTtl
+// are the error bound. Unspent tokens are given back when the lease expires.
+public class LeasingRateLimiter implements RateLimiter {
+
+    private final RateLimitStateStore store;
+    private final String key;
+    private final int capacity;
+    private final int refillRate;
+    private final int maxLeaseSize;
+    private final long leaseTtlNanos;
+    private final Ticker ticker;
+
+    private final AtomicLong leased = new AtomicLong(); // Tokens leased and not spent yet
+    private final ReentrantLock leaseLock = new ReentrantLock(); // One lease round trip at a time per node
+    private volatile long leaseExpiresAt;
+    private volatile long storeDryUntil; // After the store ran out, denials stay local until a token has refilled
+
+    public LeasingRateLimiter(RateLimitStateStore store, String key, int capacity, int refillRate,
+                              int maxLeaseSize, long leaseTtl, TimeUnit unit) {
+        this(store, key, capacity, refillRate, maxLeaseSize, leaseTtl, unit, Ticker.system());
+    }
+
+    public LeasingRateLimiter(RateLimitStateStore store, String key, int capacity, int refillRate,
+                              int maxLeaseSize, long leaseTtl, TimeUnit unit, Ticker ticker) {
+        if (capacity <= 0 || refillRate <= 0) {
+            throw new IllegalArgumentException("capacity and refillRate must be positive");
+        }
+        if (maxLeaseSize <= 0 || maxLeaseSize > capacity || leaseTtl <= 0) {
+            throw new IllegalArgumentException("maxLeaseSize must be in (0, capacity] and leaseTtl positive");
+        }
+        this.store = store;
+        this.key = key;
+        this.capacity = capacity;
+        this.refillRate = refillRate;
+        this.maxLeaseSize = maxLeaseSize;
+        this.leaseTtlNanos = unit.toNanos(leaseTtl);
+        this.ticker = ticker;
+        this.leaseExpiresAt = ticker.read();
+        this.storeDryUntil = leaseExpiresAt;
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, ticker.read());
+    }
+
+    @Override
+    public boolean tryAcquire(int permits, long now) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive");
+        }
+        if (permits > capacity) {
+            return false;
+        }
+        if (now - leaseExpiresAt < 0) {
+            if (spendLocally(permits)) {
+                return true; // Fast path: no round trip
+            }
+            if (now - storeDryUntil < 0) {
+                return false; // The store had nothing left a moment ago, don't ask again yet
+            }
+        }
+
+        leaseLock.lock();
+        try {
+            long currentTime = ticker.read(); // Time may have passed waiting for the lock
+            if (currentTime - leaseExpiresAt >= 0) {
+                expireLease();
+            } else if (spendLocally(permits)) {
+                return true; // Another thread renewed the lease while we were waiting
+            }
+
+            int requested = Math.max(maxLeaseSize, permits);
+            int granted = store.lease(key, requested, capacity, refillRate);
+            leased.addAndGet(granted);
+            leaseExpiresAt = currentTime + leaseTtlNanos;
+            if (granted < requested) {
+                storeDryUntil = currentTime + TimeUnit.SECONDS.toNanos(1) / refillRate;
+            }
+            return spendLocally(permits);
+        } finally {
+            leaseLock.unlock();
+        }
+    }
+
+    @Override
+    public void release(int permits, long nowNanos) {
+        if (nowNanos - leaseExpiresAt < 0) {
+            leased.addAndGet(permits); // Otherwise the lease is gone and the tokens go back with it
+        }
+    }
+
+    // Only what this node holds locally, the global bucket may have more
+    @Override
+    public long availablePermits() {
+        return ticker.read() - leaseExpiresAt < 0 ? leased.get() : 0;
+    }
+
+    private boolean spendLocally(int permits) {
+        while (true) {
+            long available = leased.get();
+            if (available < permits) {
+                return false;
+            }
+            if (leased.compareAndSet(available, available - permits)) {
+                return true;
+            }
+        }
+    }
+
+    // Stale tokens go back to the store instead of being spent late, which keeps the error within the bound
+    private void expireLease() {
+        long unused = leased.getAndSet(0);
+        if (unused > 0) {
+            store.giveBack(key, (int) unused);
+        }
+    }
+
+    public static void main(String[] args) {
+        InMemoryStateStore store = new InMemoryStateStore();
+        LeasingRateLimiter[] nodes = new LeasingRateLimiter[3];
+        for (int i = 0; i < nodes.length; i++) {
+            // Global limit: burst of 100, refilling 10 per second, leased 10 at a time for at most 1 second
+            nodes[i] = new LeasingRateLimiter(store, "tenant-42", 100, 10, 10, 1, TimeUnit.SECONDS);
+        }
+
+        int allowed = 0;
+        for (int i = 0; i < 300; i++) {
+            if (nodes[i % nodes.length].allowRequest()) {
+                allowed++;
+            }
+        }
+        System.out.println("Requests allowed across 3 nodes: " + allowed + " of 300 (global limit 100)");
+        System.out.println("Round trips to the shared store: " + store.getRoundTrips());
+    }
+}
@@ -0,0 +1,14 @@
+package problems.rateLimiter.distributed;
+
+// Shared state every gateway node talks to (Redis, a database row, a coordination service...). Each key is one
+// global token bucket, created on first use with the given capacity and refill rate. Both operations must be atomic
+// on the backend side, e.g. a single Lua script or a compare-and-set on the stored bucket.
+public interface RateLimitStateStore {
+
+    // Takes up to 'requested' tokens from the global bucket. Returns how many were granted, possibly 0.
+    int lease(String key, int requested, int capacity, int refillRate);
+
+    // Returns tokens a node leased but did not spend
+    void giveBack(String key, int unused);
+
+}
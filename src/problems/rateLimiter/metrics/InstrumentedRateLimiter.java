@@ -0,0 +1,135 @@
+package problems.rateLimiter.metrics;
+
+import problems.rateLimiter.algorithms.RateLimiter;
+import problems.rateLimiter.algorithms.TokenBucket;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+// Decorator that records every decision of the wrapped limiter: allow/deny counts in LongAdders and decision latency
+// in a striped histogram. Recording adds two clock reads and no shared writes or allocations on the hot path.
+public class InstrumentedRateLimiter implements RateLimiter, InstrumentedRateLimiterMBean {
+
+    private final RateLimiter delegate;
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public InstrumentedRateLimiter(RateLimiter delegate) {
+        this.delegate = delegate;
+    }
+
+    // Latency is always measured in real time, but the decision runs on the delegate's own ticker
+    @Override
+    public boolean tryAcquire(int permits) {
+        long start = System.nanoTime();
+        boolean granted = delegate.tryAcquire(permits);
+        latency.record(System.nanoTime() - start);
+        (granted ? allowed : denied).increment();
+        return granted;
+    }
+
+    @Override
+    public boolean tryAcquire(int permits, long nowNanos) {
+        long start = System.nanoTime();
+        boolean granted = delegate.tryAcquire(permits, nowNanos);
+        latency.record(System.nanoTime() - start);
+        (granted ? allowed : denied).increment();
+        return granted;
+    }
+
+    @Override
+    public int tryAcquire(int[] permits, boolean[] decisions) {
+        long start = System.nanoTime();
+        int granted = delegate.tryAcquire(permits, decisions);
+        latency.record(System.nanoTime() - start); // One decision pass, however many requests it covered
+        allowed.add(granted);
+        denied.add(permits.length - granted);
+        return granted;
+    }
+
+    @Override
+    public void release(int permits, long nowNanos) {
+        delegate.release(permits, nowNanos);
+    }
+
+    @Override
+    public long availablePermits() {
+        return delegate.availablePermits();
+    }
+
+    public MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(allowed.sum(), denied.sum(), delegate.availablePermits(), latency.snapshot());
+    }
+
+    // Exposes the metrics on the platform MBean server, e.g. name = "problems.rateLimiter:type=RateLimiter,name=api"
+    public void registerMBean(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, new ObjectName(name));
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register rate limiter MBean " + name, e);
+        }
+    }
+
+    @Override
+    public long getAllowed() {
+        return allowed.sum();
+    }
+
+    @Override
+    public long getDenied() {
+        return denied.sum();
+    }
+
+    @Override
+    public long getAvailablePermits() {
+        return delegate.availablePermits();
+    }
+
+    @Override
+    public long getP50LatencyNanos() {
+        return LatencyHistogram.percentile(latency.snapshot(), 50);
+    }
+
+    @Override
+    public long getP99LatencyNanos() {
+        return LatencyHistogram.percentile(latency.snapshot(), 99);
+    }
+
+    @Override
+    public long getP999LatencyNanos() {
+        return LatencyHistogram.percentile(latency.snapshot(), 99.9);
+    }
+
+    @Override
+    public long getMaxLatencyNanos() {
+        return LatencyHistogram.max(latency.snapshot());
+    }
+
+    public static void main(String[] args) throws Exception {
+        InstrumentedRateLimiter limiter = new InstrumentedRateLimiter(new TokenBucket(100, 1000));
+        limiter.registerMBean("problems.rateLimiter:type=RateLimiter,name=demo");
+
+        Thread[] workers = new Thread[4];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    limiter.allowRequest();
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        System.out.println(limiter.snapshot());
+        Object allowedViaJmx = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName("problems.rateLimiter:type=RateLimiter,name=demo"), "Allowed");
+        System.out.println("Allowed via JMX: " + allowedViaJmx);
+    }
+}
@@ -0,0 +1,20 @@
+package problems.rateLimiter.metrics;
+
+// JMX view of an InstrumentedRateLimiter. Counters are cumulative since creation, latencies in nanoseconds.
+public interface InstrumentedRateLimiterMBean {
+
+    long getAllowed();
+
+    long getDenied();
+
+    long getAvailablePermits();
+
+    long getP50LatencyNanos();
+
+    long getP99LatencyNanos();
+
+    long getP999LatencyNanos();
+
+    long getMaxLatencyNanos();
+
+}
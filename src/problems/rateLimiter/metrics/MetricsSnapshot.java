@@ -0,0 +1,62 @@
+package problems.rateLimiter.metrics;
+
+public final class MetricsSnapshot {
+
+    private final long allowed;
+    private final long denied;
+    private final long availablePermits;
+    private final long p50LatencyNanos;
+    private final long p99LatencyNanos;
+    private final long p999LatencyNanos;
+    private final long maxLatencyNanos;
+
+    MetricsSnapshot(long allowed, long denied, long availablePermits, long[] latencyCounts) {
+        this.allowed = allowed;
+        this.denied = denied;
+        this.availablePermits = availablePermits;
+        this.p50LatencyNanos = LatencyHistogram.percentile(latencyCounts, 50);
+        this.p99LatencyNanos = LatencyHistogram.percentile(latencyCounts, 99);
+        this.p999LatencyNanos = LatencyHistogram.percentile(latencyCounts, 99.9);
+        this.maxLatencyNanos = LatencyHistogram.max(latencyCounts);
+    }
+
+    public long getAllowed() {
+        return allowed;
+    }
+
+    public long getDenied() {
+        return denied;
+    }
+
+    public double getDenyRatio() {
+        long total = allowed + denied;
+        return total == 0 ? 0 : (double) denied / total;
+    }
+
+    public long getAvailablePermits() {
+        return availablePermits;
+    }
+
+    public long getP50LatencyNanos() {
+        return p50LatencyNanos;
+    }
+
+    public long getP99LatencyNanos() {
+        return p99LatencyNanos;
+    }
+
+    public long getP999LatencyNanos() {
+        return p999LatencyNanos;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{" + "allowed=" + allowed + ", denied=" + denied + ", availablePermits=" + availablePermits
+                + ", p50=" + p50LatencyNanos + "ns, p99=" + p99LatencyNanos + "ns, p99.9=" + p999LatencyNanos
+                + "ns, max=" + maxLatencyNanos + "ns}";
+    }
+}
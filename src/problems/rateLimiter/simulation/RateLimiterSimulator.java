@@ -0,0 +1,217 @@
+package problems.rateLimiter.simulation;
+
+import problems.rateLimiter.algorithms.FixedWindowCounter;
+import problems.rateLimiter.algorithms.LeakyBucket;
+import problems.rateLimiter.algorithms.RateLimiter;
+import problems.rateLimiter.algorithms.SlidingWindowCounter;
+import problems.rateLimiter.algorithms.SlidingWindowLog;
+import problems.rateLimiter.algorithms.Ticker;
+import problems.rateLimiter.algorithms.TokenBucket;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Replays a request trace against every algorithm under virtual time, so hours of traffic run in a fraction of a
+// second and every run is reproducible. All algorithms are configured for the same policy ("limit requests per
+// window") and compared with the exact answer, given by a sliding log over the same window.
+//
+// Trace files hold one request per line: its offset from the start of the trace in microseconds, in ascending order.
+// Blank lines and lines starting with '#' are skipped.
+//
+// Usage: java problems.rateLimiter.simulation.RateLimiterSimulator [traceFile] [limit] [windowSeconds]
+public class RateLimiterSimulator {
+
+    private final int limit;
+    private final long windowSeconds;
+    private final Map<String, Function<Ticker, RateLimiter>> algorithms = new LinkedHashMap<>();
+
+    public RateLimiterSimulator(int limit, long windowSeconds) {
+        this.limit = limit;
+        this.windowSeconds = windowSeconds;
+        long leakIntervalMillis = Math.max(1, windowSeconds * 1000 / limit);
+        algorithms.put("TokenBucket", ticker -> new TokenBucket(limit, (int) Math.max(1, limit / windowSeconds), ticker));
+        algorithms.put("FixedWindowCounter", ticker -> new FixedWindowCounter(limit, windowSeconds, ticker));
+        algorithms.put("LeakyBucket", ticker -> new LeakyBucket(limit, leakIntervalMillis, ticker));
+        algorithms.put("SlidingWindowCounter", ticker -> new SlidingWindowCounter(limit, windowSeconds, 10, ticker));
+        algorithms.put("SlidingWindowLog", ticker -> new SlidingWindowLog(limit, windowSeconds, ticker));
+    }
+
+    // Adds or replaces an algorithm to evaluate; it must read time from the given ticker
+    public void addAlgorithm(String name, Function<Ticker, RateLimiter> factory) {
+        algorithms.put(name, factory);
+    }
+
+    public List<Report> replay(long[] traceNanos) {
+        VirtualTicker referenceTicker = new VirtualTicker();
+        boolean[] reference = decide(new SlidingWindowLog(limit, windowSeconds, referenceTicker), traceNanos, referenceTicker);
+        List<Report> reports = new ArrayList<>();
+
+        for (Map.Entry<String, Function<Ticker, RateLimiter>> algorithm : algorithms.entrySet()) {
+            VirtualTicker ticker = new VirtualTicker();
+            RateLimiter limiter = algorithm.getValue().apply(ticker);
+
+            long start = System.nanoTime();
+            boolean[] decisions = decide(limiter, traceNanos, ticker);
+            long elapsed = System.nanoTime() - start;
+
+            reports.add(new Report(algorithm.getKey(), traceNanos, decisions, reference,
+                    TimeUnit.SECONDS.toNanos(windowSeconds), elapsed));
+        }
+        return reports;
+    }
+
+    private static boolean[] decide(RateLimiter limiter, long[] traceNanos, VirtualTicker ticker) {
+        boolean[] decisions = new boolean[traceNanos.length];
+        for (int i = 0; i < traceNanos.length; i++) {
+            ticker.set(traceNanos[i]);
+            decisions[i] = limiter.allowRequest(); // Reads the virtual time through the injected ticker
+        }
+        return decisions;
+    }
+
+    public static long[] loadTrace(Path file) throws IOException {
+        long[] trace = new long[1024];
+        int size = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                long nanos = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(line));
+                if (size > 0 && nanos < trace[size - 1]) {
+                    throw new IllegalArgumentException("Trace is not sorted at line: " + line);
+                }
+                if (size == trace.length) {
+                    trace = Arrays.copyOf(trace, size * 2);
+                }
+                trace[size++] = nanos;
+            }
+        }
+        return Arrays.copyOf(trace, size);
+    }
+
+    // Poisson arrivals at the mean rate, with a burst at 4x the rate for one second out of every ten
+    public static long[] syntheticTrace(int events, double ratePerSecond, long seed) {
+        Random random = new Random(seed);
+        long[] trace = new long[events];
+        double now = 0;
+        for (int i = 0; i < events; i++) {
+            boolean burst = ((long) now / 1_000_000_000L) % 10 == 0;
+            double rate = burst ? ratePerSecond * 4 : ratePerSecond;
+            now += -Math.log(1 - random.nextDouble()) / rate * 1e9;
+            trace[i] = (long) now;
+        }
+        return trace;
+    }
+
+    public static final class Report {
+        private final String algorithm;
+        private final long accepted;
+        private final long rejected;
+        private final long falseAccepts; // Accepted although the exact limit would have rejected it
+        private final long falseRejects; // Rejected although the exact limit would have accepted it
+        private final long peakInWindow; // Most requests accepted in any window-long interval
+        private final double eventsPerSecond;
+
+        private Report(String algorithm, long[] trace, boolean[] decisions, boolean[] reference, long windowNanos,
+                       long elapsedNanos) {
+            this.algorithm = algorithm;
+            long accepted = 0;
+            long falseAccepts = 0;
+            long falseRejects = 0;
+            long[] acceptedTimes = new long[trace.length];
+            for (int i = 0; i < trace.length; i++) {
+                if (decisions[i]) {
+                    acceptedTimes[(int) accepted++] = trace[i];
+                }
+                if (decisions[i] && !reference[i]) {
+                    falseAccepts++;
+                } else if (!decisions[i] && reference[i]) {
+                    falseRejects++;
+                }
+            }
+
+            // Two pointers over the accepted timestamps find the busiest window
+            long peak = 0;
+            int windowStart = 0;
+            for (int i = 0; i < accepted; i++) {
+                while (acceptedTimes[i] - acceptedTimes[windowStart] >= windowNanos) {
+                    windowStart++;
+                }
+                peak = Math.max(peak, i - windowStart + 1);
+            }
+
+            this.accepted = accepted;
+            this.rejected = trace.length - accepted;
+            this.falseAccepts = falseAccepts;
+            this.falseRejects = falseRejects;
+            this.peakInWindow = peak;
+            this.eventsPerSecond = trace.length * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getFalseAccepts() {
+            return falseAccepts;
+        }
+
+        public long getFalseRejects() {
+            return falseRejects;
+        }
+
+        public double getAccuracy() {
+            long total = accepted + rejected;
+            return total == 0 ? 1 : 1 - (double) (falseAccepts + falseRejects) / total;
+        }
+
+        public long getPeakInWindow() {
+            return peakInWindow;
+        }
+
+        public double getEventsPerSecond() {
+            return eventsPerSecond;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int limit = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        long windowSeconds = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        long[] trace = args.length > 0 ? loadTrace(Paths.get(args[0])) : syntheticTrace(5_000_000, limit * 1.2, 42);
+
+        System.out.printf("Replaying %d requests (%.1f virtual hours), limit %d per %ds%n",
+                trace.length, trace[trace.length - 1] / 3.6e12, limit, windowSeconds);
+        System.out.printf("%-22s %10s %10s %9s %12s %12s %8s %14s%n",
+                "algorithm", "accepted", "rejected", "accuracy", "false acc.", "false rej.", "peak", "events/s");
+
+        RateLimiterSimulator simulator = new RateLimiterSimulator(limit, windowSeconds);
+        for (Report report : simulator.replay(trace)) {
+            System.out.printf("%-22s %10d %10d %8.2f%% %12d %12d %8d %14.0f%n",
+                    report.getAlgorithm(), report.getAccepted(), report.getRejected(), report.getAccuracy() * 100,
+                    report.getFalseAccepts(), report.getFalseRejects(), report.getPeakInWindow(),
+                    report.getEventsPerSecond());
+        }
+    }
+}
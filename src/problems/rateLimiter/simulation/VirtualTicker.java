@@ -0,0 +1,25 @@
+package problems.rateLimiter.simulation;
+
+import problems.rateLimiter.algorithms.Ticker;
+
+// Time that only moves when told to. Single-threaded: a simulation sets it before each replayed event.
+public class VirtualTicker implements Ticker {
+
+    private long now;
+
+    @Override
+    public long read() {
+        return now;
+    }
+
+    public void set(long nanos) {
+        if (nanos < now) {
+            throw new IllegalArgumentException("Virtual time cannot go backwards");
+        }
+        now = nanos;
+    }
+
+    public void advance(long nanos) {
+        set(now + nanos);
+    }
+}